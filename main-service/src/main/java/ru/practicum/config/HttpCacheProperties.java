@@ -0,0 +1,32 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.http.CacheControl;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Политики Cache-Control публичных эндпоинтов. Нулевой max-age означает no-cache:
+ * клиент и CDN хранят ответ, но каждый раз подтверждают его условным запросом.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "ewm.http-cache")
+public class HttpCacheProperties {
+    private Duration defaultMaxAge = Duration.ZERO;
+    private Map<String, Duration> endpoints = new HashMap<>();
+
+    public CacheControl forEndpoint(String endpoint) {
+        Duration maxAge = endpoints.getOrDefault(endpoint, defaultMaxAge);
+        if (maxAge.isZero()) {
+            return CacheControl.noCache().cachePublic();
+        }
+        return CacheControl.maxAge(maxAge).cachePublic();
+    }
+}
@@ -0,0 +1,27 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Бюджеты времени ответа по эндпоинтам. Ожидание статистики просмотров ограничено остатком бюджета:
+ * если сервис статистики не успел, ответ уходит без свежих просмотров.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "ewm.latency-budget")
+public class LatencyBudgetProperties {
+    private Duration defaultBudget = Duration.ofMillis(500);
+    private Map<String, Duration> endpoints = new HashMap<>();
+
+    public Duration forEndpoint(String endpoint) {
+        return endpoints.getOrDefault(endpoint, defaultBudget);
+    }
+}
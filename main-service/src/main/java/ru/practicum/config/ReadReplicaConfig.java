@@ -0,0 +1,81 @@
+package ru.practicum.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Основная БД и реплики за одним DataSource. LazyConnectionDataSourceProxy берет физическое соединение
+ * при первом запросе, когда признак readOnly транзакции уже выставлен, и для readOnly отдает его из реплик.
+ * Для локальной проверки реплика может указывать на ту же БД, что и spring.datasource.url.
+ */
+@Configuration
+@ConditionalOnProperty(name = "ewm.datasource.routing.enabled", havingValue = "true")
+public class ReadReplicaConfig implements WebMvcConfigurer {
+
+    private final ReadReplicaProperties properties;
+    private final ReadYourWrites readYourWrites;
+
+    public ReadReplicaConfig(ReadReplicaProperties properties) {
+        this.properties = properties;
+        this.readYourWrites = new ReadYourWrites(properties.getReadYourWritesWindow(),
+                properties.getReadYourWritesMaxUsers());
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaDataSource replicaDataSource(HikariDataSource primaryDataSource, MeterRegistry meterRegistry) {
+        List<HikariDataSource> pools = new ArrayList<>();
+        for (int i = 0; i < properties.getReplicas().size(); i++) {
+            ReadReplicaProperties.Replica replica = properties.getReplicas().get(i);
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("replica-" + (i + 1));
+            pool.setJdbcUrl(replica.getUrl());
+            pool.setUsername(replica.getUsername());
+            pool.setPassword(replica.getPassword());
+            pool.setMaximumPoolSize(replica.getMaximumPoolSize());
+            pool.setReadOnly(true);
+            // Недоступная реплика не должна мешать запуску сервиса
+            pool.setInitializationFailTimeout(-1);
+            pools.add(pool);
+        }
+        return new ReplicaDataSource(primaryDataSource, pools, readYourWrites,
+                properties.getHealthCheckInterval(), properties.getMaxReplicationLag(), meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaDataSource replicaDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(replicaDataSource);
+        return dataSource;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (!properties.getReadYourWritesWindow().isZero()) {
+            registry.addInterceptor(new ReadYourWritesInterceptor(readYourWrites));
+        }
+    }
+}
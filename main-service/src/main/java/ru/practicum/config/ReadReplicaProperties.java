@@ -0,0 +1,37 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Маршрутизация чтений на реплики: транзакции readOnly уходят на реплики, остальные - на основную БД.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "ewm.datasource.routing")
+public class ReadReplicaProperties {
+    private boolean enabled = false;
+    private List<Replica> replicas = new ArrayList<>();
+    // Период проверки реплик: доступность и отставание репликации
+    private Duration healthCheckInterval = Duration.ofSeconds(5);
+    private Duration maxReplicationLag = Duration.ofSeconds(10);
+    // Окно "читаю свои записи": после записи пользователь читает с основной БД. Ноль - выключено
+    private Duration readYourWritesWindow = Duration.ZERO;
+    private long readYourWritesMaxUsers = 100_000;
+
+    @Getter
+    @Setter
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+    }
+}
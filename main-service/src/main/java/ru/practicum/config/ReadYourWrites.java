@@ -0,0 +1,44 @@
+package ru.practicum.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+
+/**
+ * Пользователи, недавно выполнявшие запись, и признак "читать с основной БД" для текущего потока.
+ * Учет локальный для экземпляра: при нескольких экземплярах окно работает при липких сессиях.
+ */
+public class ReadYourWrites {
+
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = new ThreadLocal<>();
+
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWrites(Duration window, long maxUsers) {
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(window)
+                .maximumSize(maxUsers)
+                .build();
+    }
+
+    public void recordWrite(String user) {
+        recentWriters.put(user, Boolean.TRUE);
+    }
+
+    public boolean wroteRecently(String user) {
+        return recentWriters.getIfPresent(user) != null;
+    }
+
+    public void requirePrimary() {
+        PRIMARY_REQUIRED.set(Boolean.TRUE);
+    }
+
+    public void clear() {
+        PRIMARY_REQUIRED.remove();
+    }
+
+    public boolean isPrimaryRequired() {
+        return Boolean.TRUE.equals(PRIMARY_REQUIRED.get());
+    }
+}
@@ -0,0 +1,46 @@
+package ru.practicum.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+
+/**
+ * Отмечает успешные записи пользователя (по переменной пути userId) и направляет его последующие
+ * чтения на основную БД, пока не истечет окно.
+ */
+@RequiredArgsConstructor
+public class ReadYourWritesInterceptor implements HandlerInterceptor {
+
+    private final ReadYourWrites readYourWrites;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String user = userOf(request);
+        if (user != null && readYourWrites.wroteRecently(user)) {
+            readYourWrites.requirePrimary();
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        readYourWrites.clear();
+        String user = userOf(request);
+        boolean write = !HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod());
+        if (user != null && write && ex == null && response.getStatus() < 400) {
+            readYourWrites.recordWrite(user);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private String userOf(HttpServletRequest request) {
+        Map<String, String> variables =
+                (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        return variables == null ? null : variables.get("userId");
+    }
+}
@@ -0,0 +1,146 @@
+package ru.practicum.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Источник соединений для транзакций только на чтение: реплики по кругу, только исправные.
+ * Если исправных реплик нет или действует окно "читаю свои записи", соединение берется из основной БД.
+ */
+@Slf4j
+public class ReplicaDataSource extends AbstractDataSource implements DisposableBean {
+
+    // Ноль, если реплика догнала основную БД или это не реплика (локальная подмена)
+    private static final String LAG_QUERY = "SELECT CASE WHEN NOT pg_is_in_recovery() " +
+            "OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) END";
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final ReadYourWrites readYourWrites;
+    private final Duration maxReplicationLag;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService healthChecker;
+    private final Counter replicaReads;
+    private final Counter fallbackReads;
+    private final Counter readYourWritesReads;
+
+    public ReplicaDataSource(DataSource primary, List<HikariDataSource> replicaPools, ReadYourWrites readYourWrites,
+                             Duration healthCheckInterval, Duration maxReplicationLag, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = replicaPools.stream().map(Replica::new).toList();
+        this.readYourWrites = readYourWrites;
+        this.maxReplicationLag = maxReplicationLag;
+        this.replicaReads = readCounter(meterRegistry, "replica");
+        this.fallbackReads = readCounter(meterRegistry, "primary-fallback");
+        this.readYourWritesReads = readCounter(meterRegistry, "primary-read-your-writes");
+        replicas.forEach(replica -> Gauge.builder("ewm.datasource.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+                .tag("replica", replica.pool.getPoolName())
+                .register(meterRegistry));
+
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // До первой проверки реплики считаются неисправными и чтения идут в основную БД
+        healthChecker.scheduleWithFixedDelay(this::checkReplicas, 0,
+                healthCheckInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (readYourWrites.isPrimaryRequired()) {
+            readYourWritesReads.increment();
+            return primary.getConnection();
+        }
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(1, replicas.size()));
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (!replica.healthy) {
+                continue;
+            }
+            try {
+                Connection connection = replica.pool.getConnection();
+                replicaReads.increment();
+                return connection;
+            } catch (SQLException e) {
+                // До следующей проверки реплика не используется
+                markUnhealthy(replica, e.getMessage());
+            }
+        }
+        fallbackReads.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Учетные данные задаются в настройках пулов реплик");
+    }
+
+    @Override
+    public void destroy() {
+        healthChecker.shutdownNow();
+        replicas.forEach(replica -> replica.pool.close());
+    }
+
+    private void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.pool.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(LAG_QUERY)) {
+                resultSet.next();
+                double lagSeconds = resultSet.getDouble(1);
+                if (lagSeconds * 1000 > maxReplicationLag.toMillis()) {
+                    markUnhealthy(replica, "отставание " + lagSeconds + " с");
+                } else if (!replica.healthy) {
+                    replica.healthy = true;
+                    log.info("Реплика {} доступна для чтения", replica.pool.getPoolName());
+                }
+            } catch (Exception e) {
+                markUnhealthy(replica, e.getMessage());
+            }
+        }
+    }
+
+    private void markUnhealthy(Replica replica, String reason) {
+        if (replica.healthy) {
+            log.warn("Реплика {} исключена из чтения: {}", replica.pool.getPoolName(), reason);
+        }
+        replica.healthy = false;
+    }
+
+    private static Counter readCounter(MeterRegistry meterRegistry, String target) {
+        return Counter.builder("ewm.datasource.reads")
+                .description("Соединения для транзакций только на чтение по источнику")
+                .tag("target", target)
+                .register(meterRegistry);
+    }
+
+    private static class Replica {
+        private final HikariDataSource pool;
+        private volatile boolean healthy;
+
+        Replica(HikariDataSource pool) {
+            this.pool = pool;
+        }
+    }
+}
@@ -2,8 +2,10 @@ package ru.practicum.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.practicum.dto.CategoryDto;
 import ru.practicum.service.CategoryService;
 
@@ -19,18 +21,22 @@ import java.util.List;
 public class CategoryPublicController {
 
     private final CategoryService categoryService;
+    private final ConditionalGet conditionalGet;
 
     @GetMapping
-    public List<CategoryDto> getCategories(
+    public ResponseEntity<List<CategoryDto>> getCategories(
             @RequestParam(defaultValue = "0") @PositiveOrZero Integer from,
-            @RequestParam(defaultValue = "10") @Positive Integer size) {
+            @RequestParam(defaultValue = "10") @Positive Integer size,
+            WebRequest request) {
         log.info("Получен запрос на получение категорий: from={}, size={}", from, size);
-        return categoryService.getCategories(from, size);
+        return conditionalGet.respond(request, "categories", categoryService.getCategoriesVersion(),
+                () -> categoryService.getCategories(from, size));
     }
 
     @GetMapping("/{catId}")
-    public CategoryDto getCategory(@PathVariable Long catId) {
+    public ResponseEntity<CategoryDto> getCategory(@PathVariable Long catId, WebRequest request) {
         log.info("Получен запрос на получение категории с id: {}", catId);
-        return categoryService.getCategoryById(catId);
+        return conditionalGet.respond(request, "category", categoryService.getCategoryVersion(catId),
+                () -> categoryService.getCategoryById(catId));
     }
 }
\ No newline at end of file
@@ -2,9 +2,12 @@ package ru.practicum.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.practicum.dto.CompilationDto;
+import ru.practicum.service.CompilationPageVersion;
 import ru.practicum.service.CompilationService;
 
 import jakarta.validation.constraints.Positive;
@@ -19,19 +22,26 @@ import java.util.List;
 public class CompilationPublicController {
 
     private final CompilationService compilationService;
+    private final ConditionalGet conditionalGet;
 
     @GetMapping
-    public List<CompilationDto> getCompilations(
+    public ResponseEntity<List<CompilationDto>> getCompilations(
             @RequestParam(required = false) Boolean pinned,
             @RequestParam(defaultValue = "0") @PositiveOrZero Integer from,
-            @RequestParam(defaultValue = "10") @Positive Integer size) {
+            @RequestParam(defaultValue = "10") @Positive Integer size,
+            WebRequest request) {
         log.info("Получен запрос на получение подборок: pinned={}, from={}, size={}", pinned, from, size);
-        return compilationService.getCompilations(pinned, from, size);
+        // Заявки и просмотры считаются один раз: для версии, а полный ответ берет их оттуда же
+        CompilationPageVersion version = compilationService.getCompilationsVersion(pinned, from, size);
+        return conditionalGet.respond(request, "compilations", version.version(),
+                () -> compilationService.getCompilations(version));
     }
 
     @GetMapping("/{compId}")
-    public CompilationDto getCompilation(@PathVariable Long compId) {
+    public ResponseEntity<CompilationDto> getCompilation(@PathVariable Long compId, WebRequest request) {
         log.info("Получен запрос на получение подборки с id: {}", compId);
-        return compilationService.getCompilationById(compId);
+        CompilationPageVersion version = compilationService.getCompilationVersion(compId);
+        return conditionalGet.respond(request, "compilation", version.version(),
+                () -> compilationService.getCompilationById(version));
     }
 }
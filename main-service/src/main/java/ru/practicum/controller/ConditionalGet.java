@@ -0,0 +1,37 @@
+package ru.practicum.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.WebRequest;
+import ru.practicum.config.HttpCacheProperties;
+import ru.practicum.service.ResourceVersion;
+
+import java.util.function.Supplier;
+
+/**
+ * Условный GET: сравнивает версию ресурса с If-None-Match / If-Modified-Since до сборки ответа.
+ * При совпадении отдается 304 без загрузки сущностей и маппинга DTO.
+ */
+@Component
+@RequiredArgsConstructor
+public class ConditionalGet {
+
+    private final HttpCacheProperties httpCacheProperties;
+
+    public <T> ResponseEntity<T> respond(WebRequest request, String endpoint, ResourceVersion version, Supplier<T> body) {
+        // checkNotModified сам выставляет ETag и Last-Modified в ответ, в том числе для 200
+        boolean notModified = version.lastModified() == null
+                ? request.checkNotModified(version.etag())
+                : request.checkNotModified(version.etag(), version.lastModified().toEpochMilli());
+        if (notModified) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .cacheControl(httpCacheProperties.forEndpoint(endpoint))
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(httpCacheProperties.forEndpoint(endpoint))
+                .body(body.get());
+    }
+}
@@ -3,11 +3,14 @@ package ru.practicum.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.practicum.dto.EventFullDto;
 import ru.practicum.dto.EventShortDto;
 import ru.practicum.service.EventService;
+import ru.practicum.service.PublicEventVersion;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.constraints.Positive;
@@ -23,6 +26,7 @@ import java.util.List;
 public class EventPublicController {
 
     private final EventService eventService;
+    private final ConditionalGet conditionalGet;
 
     /*@GetMapping
     public List<EventShortDto> getEvents(
@@ -74,10 +78,14 @@ public class EventPublicController {
 
 
     @GetMapping("/{id}")
-    public EventFullDto getEvent(@PathVariable Long id, HttpServletRequest request) {
+    public ResponseEntity<EventFullDto> getEvent(@PathVariable Long id, HttpServletRequest request, WebRequest webRequest) {
         String clientIp = extractIp(request);
         log.info("GET запрос к событию {} с IP: {}", id, clientIp);
-        return eventService.getPublicEventById(id, clientIp);
+        // Просмотр учитывается и для полного ответа, и для подтвержденной копии клиента (304).
+        // Заявки и просмотры считаются один раз: для версии, а полный ответ берет их оттуда же
+        PublicEventVersion version = eventService.viewPublicEvent(id, clientIp);
+        return conditionalGet.respond(webRequest, "public-event",
+                version.version(), () -> eventService.getPublicEventById(version));
     }
 
     private String extractIp(HttpServletRequest request) {
@@ -39,4 +39,5 @@ public class EventFullDto {
     private EventState state;
     private Long views;
     private Long confirmedRequests;
+    private Long commentsCount;
 }
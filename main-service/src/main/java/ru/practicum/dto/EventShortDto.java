@@ -25,4 +25,5 @@ public class EventShortDto {
     private Boolean paid;
     private Long views;
     private Long confirmedRequests;
+    private Long commentsCount;
 }
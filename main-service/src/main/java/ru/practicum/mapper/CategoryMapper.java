@@ -13,6 +13,7 @@ public interface CategoryMapper {
 
 
     @Mapping(target = "id", ignore = true)
+    @Mapping(target = "updatedOn", ignore = true)
     Category toCategory(NewCategoryDto newCategoryDto);
 
     CategoryDto toCategoryDto(Category category);
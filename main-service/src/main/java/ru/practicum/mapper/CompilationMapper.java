@@ -15,6 +15,7 @@ public interface CompilationMapper {
 
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "events", ignore = true)
+    @Mapping(target = "updatedOn", ignore = true)
     Compilation toCompilation(NewCompilationDto newCompilationDto);
 
     CompilationDto toCompilationDto(Compilation compilation);
@@ -22,6 +23,7 @@ public interface CompilationMapper {
     @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "events", ignore = true)
+    @Mapping(target = "updatedOn", ignore = true)
     void updateCompilationFromRequest(UpdateCompilationRequest updateCompilationRequest, @MappingTarget Compilation compilation);
 
 }
@@ -19,6 +19,8 @@ public interface EventMapper {
     @Mapping(target = "initiator", ignore = true)
     @Mapping(target = "createdOn", expression = "java(java.time.LocalDateTime.now())")
     @Mapping(target = "publishedOn", ignore = true)
+    @Mapping(target = "updatedOn", ignore = true)
+    @Mapping(target = "commentsCount", ignore = true)
     @Mapping(target = "location", ignore = true)
     @Mapping(target = "state", expression = "java(ru.practicum.model.enums.EventState.PENDING)")
     Event toEvent(NewEventDto newEventDto);
@@ -37,6 +39,8 @@ public interface EventMapper {
     @Mapping(target = "initiator", ignore = true)
     @Mapping(target = "createdOn", ignore = true)
     @Mapping(target = "publishedOn", ignore = true)
+    @Mapping(target = "updatedOn", ignore = true)
+    @Mapping(target = "commentsCount", ignore = true)
     @Mapping(target = "location", ignore = true)
     @Mapping(target = "state", ignore = true)
     void updateEventFromUserRequest(UpdateEventUserRequest updateEventUserRequest, @MappingTarget Event event);
@@ -47,6 +51,8 @@ public interface EventMapper {
     @Mapping(target = "initiator", ignore = true)
     @Mapping(target = "createdOn", ignore = true)
     @Mapping(target = "publishedOn", ignore = true)
+    @Mapping(target = "updatedOn", ignore = true)
+    @Mapping(target = "commentsCount", ignore = true)
     @Mapping(target = "location", ignore = true)
     @Mapping(target = "state", ignore = true)
     void updateEventFromAdminRequest(UpdateEventAdminRequest updateEventAdminRequest, @MappingTarget Event event);
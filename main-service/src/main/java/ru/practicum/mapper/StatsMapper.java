@@ -45,6 +45,7 @@ public class StatsMapper {
                                 .paid(event.getPaid())
                                 .confirmedRequests(confirmedRequests)
                                 .views(views)
+                                .commentsCount(event.getCommentsCount())
                                 .build();
                     } catch (Exception e) {
                         // Логируем ошибку но продолжаем обработку других событий
@@ -89,6 +90,7 @@ public class StatsMapper {
                             .state(event.getState())
                             .confirmedRequests(confirmedRequests)  // ← Устанавливаем значение
                             .views(views)                         // ← Устанавливаем значение
+                            .commentsCount(event.getCommentsCount())
                             .build();
 
                     log.info("Built DTO for event {}: confirmedRequests={}",
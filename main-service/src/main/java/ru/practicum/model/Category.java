@@ -1,11 +1,17 @@
 package ru.practicum.model;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import jakarta.persistence.*;
+import java.time.LocalDateTime;
 import java.util.Objects;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "ewm-categories")
 @Table(name = "categories")
 @Getter
 @Setter
@@ -21,6 +27,10 @@ public class Category {
     @Column(name = "name", nullable = false, unique = true)
     private String name;
 
+    @UpdateTimestamp
+    @Column(name = "updated_on", nullable = false)
+    private LocalDateTime updatedOn;
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -1,13 +1,19 @@
 package ru.practicum.model;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import jakarta.persistence.*;
+import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.Objects;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "ewm-compilations")
 @Table(name = "compilations")
 @Getter
 @Setter
@@ -26,7 +32,12 @@ public class Compilation {
     @Column(name = "pinned", nullable = false)
     private Boolean pinned;
 
+    @UpdateTimestamp
+    @Column(name = "updated_on", nullable = false)
+    private LocalDateTime updatedOn;
+
     @ManyToMany
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "ewm-compilation-events")
     @JoinTable(
             name = "compilation_events",
             joinColumns = @JoinColumn(name = "compilation_id"),
@@ -1,6 +1,7 @@
 package ru.practicum.model;
 
 import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
 import ru.practicum.model.enums.EventState;
 
 import jakarta.persistence.*;
@@ -49,6 +50,11 @@ public class Event {
     @Column(name = "published_on")
     private LocalDateTime publishedOn;
 
+    // Момент последнего изменения, используется для ETag публичных ответов
+    @UpdateTimestamp
+    @Column(name = "updated_on", nullable = false)
+    private LocalDateTime updatedOn;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "location_id", nullable = false)
     @ToString.Exclude
@@ -67,6 +73,12 @@ public class Event {
     @Column(name = "state", nullable = false, length = 20)
     private EventState state;
 
+    // Число одобренных комментариев. Меняется только атомарными UPDATE в EventRepository,
+    // поэтому Hibernate колонку не пишет и не затирает устаревшим значением
+    @Builder.Default
+    @Column(name = "comments_count", nullable = false, insertable = false, updatable = false)
+    private Long commentsCount = 0L;
+
     @OneToMany(mappedBy = "event", cascade = CascadeType.ALL)
     private List<Comment> comments;
 
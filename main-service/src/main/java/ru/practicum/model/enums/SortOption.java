@@ -2,5 +2,6 @@ package ru.practicum.model.enums;
 
 public enum SortOption {
     EVENT_DATE,
-    VIEWS
+    VIEWS,
+    TRENDING
 }
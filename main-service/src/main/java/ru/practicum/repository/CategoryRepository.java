@@ -1,12 +1,23 @@
 package ru.practicum.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import ru.practicum.model.Category;
 
+import java.time.LocalDateTime;
+import java.util.Optional;
+
 public interface CategoryRepository extends JpaRepository<Category, Long> {
     Boolean existsByName(String name);
 
     Boolean existsByNameAndIdNot(String name, Long id);
 
+    // Версия справочника для ETag: любое добавление, изменение или удаление меняет число строк или максимум updatedOn
+    @Query("SELECT COUNT(c) AS count, MAX(c.updatedOn) AS lastModified FROM Category c")
+    TableVersion getTableVersion();
+
+    @Query("SELECT c.updatedOn FROM Category c WHERE c.id = :id")
+    Optional<LocalDateTime> findUpdatedOnById(@Param("id") Long id);
 
 }
\ No newline at end of file
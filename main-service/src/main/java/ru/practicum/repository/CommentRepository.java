@@ -7,11 +7,10 @@ import org.springframework.data.repository.query.Param;
 import ru.practicum.model.Comment;
 import ru.practicum.model.enums.CommentStatus;
 
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
-public interface CommentRepository extends JpaRepository<Comment, Long> {
+public interface CommentRepository extends JpaRepository<Comment, Long>, CommentSearchRepository {
 
     // Поиск одобренных комментариев для события с пагинацией
     List<Comment> findByEventIdAndStatusOrderByCreatedOnDesc(Long eventId, CommentStatus status, Pageable pageable);
@@ -30,21 +29,14 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
     // Проверка существования комментария у пользователя к событию
     boolean existsByAuthorIdAndEventId(Long authorId, Long eventId);
 
-    // Поиск для администратора с фильтрами
-    @Query("SELECT c FROM Comment c WHERE " +
-            "(:users IS NULL OR c.author.id IN :users) AND " +
-            "(:events IS NULL OR c.event.id IN :events) AND " +
-            "(:status IS NULL OR c.status = :status) AND " +
-            "(c.createdOn BETWEEN :rangeStart AND :rangeEnd)")
-    List<Comment> findCommentsByAdmin(@Param("users") List<Long> users,
-                                      @Param("events") List<Long> events,
-                                      @Param("status") CommentStatus status,
-                                      @Param("rangeStart") LocalDateTime rangeStart,
-                                      @Param("rangeEnd") LocalDateTime rangeEnd,
-                                      Pageable pageable);
-
     // Подсчет количества одобренных комментариев для события
     Long countByEventIdAndStatus(Long eventId, CommentStatus status);
 
+    // Комментарии автора в заданном статусе, сгруппированные по событиям
+    @Query("SELECT c.event.id AS eventId, COUNT(c) AS count FROM Comment c " +
+            "WHERE c.author.id = :authorId AND c.status = :status GROUP BY c.event.id")
+    List<EventCommentCount> countByAuthorIdAndStatusGroupByEvent(@Param("authorId") Long authorId,
+                                                                 @Param("status") CommentStatus status);
+
 
 }
@@ -0,0 +1,12 @@
+package ru.practicum.repository;
+
+import org.springframework.data.jpa.domain.Specification;
+import ru.practicum.model.Comment;
+
+import java.util.List;
+
+public interface CommentSearchRepository {
+
+    // Страница комментариев от новых к старым по смещению, без запроса общего количества
+    List<Comment> search(Specification<Comment> specification, int offset, int limit);
+}
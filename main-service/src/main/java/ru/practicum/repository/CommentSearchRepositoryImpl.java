@@ -0,0 +1,38 @@
+package ru.practicum.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+import ru.practicum.model.Comment;
+
+import java.util.List;
+
+public class CommentSearchRepositoryImpl implements CommentSearchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Comment> search(Specification<Comment> specification, int offset, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Comment> query = cb.createQuery(Comment.class);
+        Root<Comment> root = query.from(Comment.class);
+        // Автор нужен в ответе, подгружаем его тем же запросом
+        root.fetch("author");
+
+        Predicate predicate = specification == null ? null : specification.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(cb.desc(root.get("createdOn")), cb.desc(root.get("id")));
+
+        return entityManager.createQuery(query)
+                .setFirstResult(offset)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
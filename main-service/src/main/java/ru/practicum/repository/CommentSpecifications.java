@@ -0,0 +1,53 @@
+package ru.practicum.repository;
+
+import org.springframework.data.jpa.domain.Specification;
+import ru.practicum.model.Comment;
+import ru.practicum.model.enums.CommentStatus;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Условия поиска комментариев. Незаданный фильтр дает null и не попадает в запрос,
+ * поэтому планировщик видит только реально переданные условия и может использовать индексы.
+ */
+public final class CommentSpecifications {
+
+    private CommentSpecifications() {
+    }
+
+    public static Specification<Comment> authorIn(Collection<Long> authorIds) {
+        if (authorIds == null || authorIds.isEmpty()) {
+            return null;
+        }
+        return (root, query, cb) -> root.get("author").get("id").in(authorIds);
+    }
+
+    public static Specification<Comment> eventIn(Collection<Long> eventIds) {
+        if (eventIds == null || eventIds.isEmpty()) {
+            return null;
+        }
+        return (root, query, cb) -> root.get("event").get("id").in(eventIds);
+    }
+
+    public static Specification<Comment> hasStatus(CommentStatus status) {
+        if (status == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(root.get("status"), status);
+    }
+
+    public static Specification<Comment> createdNotBefore(LocalDateTime start) {
+        if (start == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("createdOn"), start);
+    }
+
+    public static Specification<Comment> createdNotAfter(LocalDateTime end) {
+        if (end == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("createdOn"), end);
+    }
+}
@@ -1,15 +1,39 @@
 package ru.practicum.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import ru.practicum.model.Compilation;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface CompilationRepository extends JpaRepository<Compilation, Long> {
     Page<Compilation> findByPinned(Boolean pinned, Pageable pageable);
 
+    // Результаты запросов подборок хранятся в кэше запросов и сбрасываются при любом изменении таблицы
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Compilation> findByPinned(Boolean pinned, Sort sort);
+
+    // Идентификаторы страницы подборок без загрузки самих подборок и их событий
+    @Query("SELECT c.id FROM Compilation c WHERE :pinned IS NULL OR c.pinned = :pinned")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Long> findPageIds(@Param("pinned") Boolean pinned, Pageable pageable);
+
+    @Query("SELECT MAX(c.updatedOn) AS compilationsUpdatedOn, MAX(e.updatedOn) AS eventsUpdatedOn, " +
+            "MAX(cat.updatedOn) AS categoriesUpdatedOn " +
+            "FROM Compilation c LEFT JOIN c.events e LEFT JOIN e.category cat WHERE c.id IN :ids")
+    CompilationsVersion getVersion(@Param("ids") Collection<Long> compilationIds);
+
+    @Query("SELECT DISTINCT e.id FROM Compilation c JOIN c.events e WHERE c.id IN :ids")
+    List<Long> findEventIds(@Param("ids") Collection<Long> compilationIds);
+
 
 
     // Проверка существования события в подборке
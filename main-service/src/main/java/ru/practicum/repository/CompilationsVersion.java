@@ -0,0 +1,11 @@
+package ru.practicum.repository;
+
+import java.time.LocalDateTime;
+
+public interface CompilationsVersion {
+    LocalDateTime getCompilationsUpdatedOn();
+
+    LocalDateTime getEventsUpdatedOn();
+
+    LocalDateTime getCategoriesUpdatedOn();
+}
@@ -0,0 +1,7 @@
+package ru.practicum.repository;
+
+public interface EventCommentCount {
+    Long getEventId();
+
+    Long getCount();
+}
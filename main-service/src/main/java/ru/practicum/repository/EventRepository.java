@@ -3,8 +3,10 @@ package ru.practicum.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.model.Event;
 import ru.practicum.model.User;
 import ru.practicum.model.enums.EventState;
@@ -26,4 +28,16 @@ public interface EventRepository extends JpaRepository<Event, Long> {
 
     List<Event> findByState(EventState state);
 
+    // Версия события для ETag без загрузки самой сущности
+    @Query("SELECT e.state AS state, e.updatedOn AS updatedOn, c.updatedOn AS categoryUpdatedOn " +
+            "FROM Event e JOIN e.category c WHERE e.id = :id")
+    Optional<EventVersion> findVersionById(@Param("id") Long id);
+
+    // Атомарное изменение счетчика одобренных комментариев; updated_on двигается, чтобы сменился ETag
+    @Transactional
+    @Modifying
+    @Query("UPDATE Event e SET e.commentsCount = e.commentsCount + :delta, e.updatedOn = CURRENT_TIMESTAMP " +
+            "WHERE e.id = :id")
+    int addToCommentsCount(@Param("id") Long eventId, @Param("delta") long delta);
+
 }
\ No newline at end of file
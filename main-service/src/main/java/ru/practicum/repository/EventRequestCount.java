@@ -0,0 +1,7 @@
+package ru.practicum.repository;
+
+public interface EventRequestCount {
+    Long getEventId();
+
+    Long getCount();
+}
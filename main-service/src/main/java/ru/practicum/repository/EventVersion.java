@@ -0,0 +1,13 @@
+package ru.practicum.repository;
+
+import ru.practicum.model.enums.EventState;
+
+import java.time.LocalDateTime;
+
+public interface EventVersion {
+    EventState getState();
+
+    LocalDateTime getUpdatedOn();
+
+    LocalDateTime getCategoryUpdatedOn();
+}
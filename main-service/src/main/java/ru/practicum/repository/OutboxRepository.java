@@ -0,0 +1,42 @@
+package ru.practicum.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.practicum.model.OutboxMessage;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxRepository extends JpaRepository<OutboxMessage, Long> {
+
+    // Захват пачки готовых к отправке сообщений топика: они откладываются до leaseUntil, и другие экземпляры
+    // их не берут, пока идет доставка. Строки, захваченные параллельно, пропускаются (SKIP LOCKED)
+    @Query(value = "UPDATE outbox SET next_attempt_at = :leaseUntil WHERE id IN (" +
+            "SELECT id FROM outbox WHERE topic = :topic AND next_attempt_at <= :now " +
+            "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED) " +
+            "RETURNING *", nativeQuery = true)
+    List<OutboxMessage> claimBatch(@Param("topic") String topic,
+                                   @Param("now") LocalDateTime now,
+                                   @Param("leaseUntil") LocalDateTime leaseUntil,
+                                   @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE OutboxMessage o SET o.attempts = o.attempts + 1, o.nextAttemptAt = :nextAttemptAt WHERE o.id IN :ids")
+    int scheduleRetry(@Param("ids") Collection<Long> ids, @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+
+    // Перенос недоставляемых сообщений в outbox_dead_letter одним выражением
+    @Modifying
+    @Query(value = "WITH moved AS (DELETE FROM outbox WHERE id IN (:ids) RETURNING *) " +
+            "INSERT INTO outbox_dead_letter (id, topic, payload, created_on, attempts, failed_on, last_error) " +
+            "SELECT id, topic, payload, created_on, attempts + 1, :failedOn, :lastError FROM moved", nativeQuery = true)
+    int moveToDeadLetter(@Param("ids") Collection<Long> ids,
+                         @Param("failedOn") LocalDateTime failedOn,
+                         @Param("lastError") String lastError);
+
+    @Query("SELECT o.topic AS topic, COUNT(o) AS pending, MIN(o.createdOn) AS oldest " +
+            "FROM OutboxMessage o GROUP BY o.topic")
+    List<OutboxTopicBacklog> getBacklog();
+}
@@ -0,0 +1,11 @@
+package ru.practicum.repository;
+
+import java.time.LocalDateTime;
+
+public interface OutboxTopicBacklog {
+    String getTopic();
+
+    Long getPending();
+
+    LocalDateTime getOldest();
+}
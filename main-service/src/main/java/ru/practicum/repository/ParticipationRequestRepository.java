@@ -8,6 +8,7 @@ import ru.practicum.model.ParticipationRequest;
 import ru.practicum.model.User;
 import ru.practicum.model.enums.RequestStatus;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,4 +24,10 @@ public interface ParticipationRequestRepository extends JpaRepository<Participat
     Boolean existsByEventAndRequester(Event event, User requester);
 
     List<ParticipationRequest> findByEventAndStatus(Event event, RequestStatus status);
+
+    // Число заявок в статусе по всем событиям сразу, одним запросом; события без заявок в ответ не попадают
+    @Query("SELECT r.event.id AS eventId, COUNT(r) AS count FROM ParticipationRequest r " +
+            "WHERE r.event.id IN :eventIds AND r.status = :status GROUP BY r.event.id")
+    List<EventRequestCount> countByEventIdsAndStatus(@Param("eventIds") Collection<Long> eventIds,
+                                                     @Param("status") RequestStatus status);
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package ru.practicum.repository;
+
+import java.time.LocalDateTime;
+
+public interface TableVersion {
+    Long getCount();
+
+    LocalDateTime getLastModified();
+}
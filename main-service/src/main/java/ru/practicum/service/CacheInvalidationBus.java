@@ -0,0 +1,222 @@
+package ru.practicum.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.practicum.model.OutboxMessage;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Шина сброса локальных кэшей между экземплярами сервиса на Postgres LISTEN/NOTIFY.
+ * Изменения записываются в outbox в той же транзакции и рассылаются через pg_notify при его разборе,
+ * поэтому не теряются при падении экземпляра сразу после коммита. Каждый экземпляр слушает канал на отдельном
+ * соединении вне пула и публикует полученные уведомления как {@link RemoteInvalidation}.
+ * После потери соединения уведомления за время разрыва не восстановить, поэтому при переподключении
+ * сбрасываются все кэши.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "ewm.cache-invalidation.enabled", havingValue = "true", matchIfMissing = true)
+public class CacheInvalidationBus implements SmartLifecycle, OutboxConsumer {
+
+    public static final String TOPIC = "cache-invalidation";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Outbox outbox;
+    private final DataSourceProperties dataSourceProperties;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String origin = UUID.randomUUID().toString();
+
+    @Value("${ewm.cache-invalidation.channel:ewm_cache_invalidation}")
+    private String channel;
+
+    @Value("${ewm.cache-invalidation.poll-timeout:PT0.5S}")
+    private Duration pollTimeout;
+
+    @Value("${ewm.cache-invalidation.validation-interval:PT30S}")
+    private Duration validationInterval;
+
+    @Value("${ewm.cache-invalidation.reconnect-min-delay:PT1S}")
+    private Duration reconnectMinDelay;
+
+    @Value("${ewm.cache-invalidation.reconnect-max-delay:PT30S}")
+    private Duration reconnectMaxDelay;
+
+    private volatile boolean running;
+    private volatile Connection listenerConnection;
+    private Thread listenerThread;
+
+    public CacheInvalidationBus(JdbcTemplate jdbcTemplate,
+                                Outbox outbox,
+                                DataSourceProperties dataSourceProperties,
+                                ObjectMapper objectMapper,
+                                ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSourceProperties = dataSourceProperties;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.outbox = outbox;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onListingChanged(EventListingChangedEvent change) {
+        outbox.append(TOPIC, new RemoteInvalidation(origin, false, change, null));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onEntityChanged(EntityChangedEvent change) {
+        outbox.append(TOPIC, new RemoteInvalidation(origin, false, null, change));
+    }
+
+    @Override
+    public String topic() {
+        return TOPIC;
+    }
+
+    // Вызывается OutboxRelay вне транзакции: каждое уведомление уходит сразу, повтор безопасен
+    @Override
+    public void deliver(List<OutboxMessage> messages) {
+        for (OutboxMessage message : messages) {
+            jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", channel, message.getPayload());
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        listenerThread = new Thread(this::listen, "cache-invalidation-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        closeQuietly(listenerConnection);
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen() {
+        Duration reconnectDelay = reconnectMinDelay;
+        boolean connectedBefore = false;
+        while (running) {
+            try (Connection connection = openListenerConnection()) {
+                listenerConnection = connection;
+                log.info("Подписка на канал сброса кэшей {} установлена", channel);
+                if (connectedBefore) {
+                    eventPublisher.publishEvent(RemoteInvalidation.everything(origin));
+                }
+                connectedBefore = true;
+                reconnectDelay = reconnectMinDelay;
+                receive(connection);
+            } catch (SQLException e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("Соединение шины сброса кэшей потеряно: {}, повтор через {}", e.getMessage(), reconnectDelay);
+                if (!sleep(reconnectDelay)) {
+                    break;
+                }
+                reconnectDelay = min(reconnectDelay.multipliedBy(2), reconnectMaxDelay);
+            } finally {
+                listenerConnection = null;
+            }
+        }
+    }
+
+    private Connection openListenerConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword());
+        connection.setAutoCommit(true);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("LISTEN " + channel);
+        }
+        return connection;
+    }
+
+    private void receive(Connection connection) throws SQLException {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        long lastValidation = System.nanoTime();
+        while (running) {
+            PGNotification[] notifications = pgConnection.getNotifications((int) pollTimeout.toMillis());
+            if (notifications != null) {
+                for (PGNotification notification : notifications) {
+                    handle(notification.getParameter());
+                }
+            }
+            // Оборванное TCP-соединение без трафика само не обнаруживается
+            if (System.nanoTime() - lastValidation > validationInterval.toNanos()) {
+                if (!connection.isValid((int) Math.max(1, pollTimeout.toSeconds()))) {
+                    throw new SQLException("соединение не отвечает");
+                }
+                lastValidation = System.nanoTime();
+            }
+        }
+    }
+
+    private void handle(String payload) {
+        try {
+            RemoteInvalidation invalidation = objectMapper.readValue(payload, RemoteInvalidation.class);
+            if (origin.equals(invalidation.origin())) {
+                return;
+            }
+            log.debug("Получен сброс кэшей: {}", invalidation);
+            eventPublisher.publishEvent(invalidation);
+        } catch (JsonProcessingException e) {
+            log.warn("Некорректное уведомление о сбросе кэшей: {}", payload);
+        } catch (Exception e) {
+            log.warn("Ошибка обработки уведомления о сбросе кэшей: {}", e.getMessage());
+        }
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    private static boolean sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("Ошибка закрытия соединения шины сброса кэшей: {}", e.getMessage());
+        }
+    }
+}
@@ -15,4 +15,8 @@ public interface CategoryService {
     List<CategoryDto> getCategories(Integer from, Integer size);
 
     CategoryDto getCategoryById(Long categoryId);
+
+    ResourceVersion getCategoriesVersion();
+
+    ResourceVersion getCategoryVersion(Long categoryId);
 }
@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.dto.CategoryDto;
@@ -15,11 +16,13 @@ import ru.practicum.mapper.CategoryMapper;
 import ru.practicum.model.Category;
 import ru.practicum.repository.CategoryRepository;
 import ru.practicum.repository.EventRepository;
+import ru.practicum.repository.TableVersion;
 import ru.practicum.validator.DateValidator;
 
 
 
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -32,6 +35,7 @@ public class CategoryServiceImpl implements CategoryService {
     private final EventRepository eventRepository;
     private final CategoryMapper categoryMapper;
     private final DateValidator dateValidator;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional
@@ -57,6 +61,9 @@ public class CategoryServiceImpl implements CategoryService {
 
         category.setName(categoryDto.getName());
         Category updatedCategory = categoryRepository.save(category);
+        // Название категории входит в публичные списки событий
+        eventPublisher.publishEvent(EventListingChangedEvent.category(categoryId));
+        eventPublisher.publishEvent(new EntityChangedEvent(EntityChangedEvent.Type.CATEGORY, categoryId));
         return categoryMapper.toCategoryDto(updatedCategory);
     }
 
@@ -72,6 +79,7 @@ public class CategoryServiceImpl implements CategoryService {
         }
 
         categoryRepository.deleteById(categoryId);
+        eventPublisher.publishEvent(new EntityChangedEvent(EntityChangedEvent.Type.CATEGORY, categoryId));
     }
 
 
@@ -103,6 +111,19 @@ public class CategoryServiceImpl implements CategoryService {
         return categoryMapper.toCategoryDto(category);
     }
 
+    @Override
+    public ResourceVersion getCategoriesVersion() {
+        TableVersion version = categoryRepository.getTableVersion();
+        return ResourceVersion.withoutLastModified("categories", version.getCount(), version.getLastModified());
+    }
+
+    @Override
+    public ResourceVersion getCategoryVersion(Long categoryId) {
+        LocalDateTime updatedOn = categoryRepository.findUpdatedOnById(categoryId)
+                .orElseThrow(() -> new NotFoundException("Категория с id=" + categoryId + " не найдена"));
+        return ResourceVersion.of(updatedOn, "category", categoryId, updatedOn);
+    }
+
     private Category getCategory(Long categoryId) {
         return categoryRepository.findById(categoryId)
                 .orElseThrow(() -> new NotFoundException("Категория с id=" + categoryId + " не найдена"));
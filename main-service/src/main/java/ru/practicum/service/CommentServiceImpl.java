@@ -2,8 +2,10 @@ package ru.practicum.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.dto.CommentDto;
@@ -18,6 +20,7 @@ import ru.practicum.model.User;
 import ru.practicum.model.enums.CommentStatus;
 import ru.practicum.model.enums.EventState;
 import ru.practicum.repository.CommentRepository;
+import ru.practicum.repository.CommentSpecifications;
 import ru.practicum.repository.EventRepository;
 import ru.practicum.repository.UserRepository;
 
@@ -35,6 +38,7 @@ public class CommentServiceImpl implements CommentService {
     private final UserRepository userRepository;
     private final EventRepository eventRepository;
     private final CommentMapper commentMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
     // Публичные методы
 
@@ -106,7 +110,9 @@ public class CommentServiceImpl implements CommentService {
                 .orElseThrow(() -> new NotFoundException("Комментарий с id=" + commentId + " от пользователя с id=" + userId + " не найден"));
 
         // При редактировании статус сбрасывается на модерацию
+        CommentStatus previousStatus = comment.getStatus();
         comment.setStatus(CommentStatus.PENDING);
+        updateApprovedCount(comment, previousStatus);
         commentMapper.updateCommentFromDto(updateCommentDto, comment);
 
         Comment updatedComment = commentRepository.save(comment);
@@ -124,6 +130,7 @@ public class CommentServiceImpl implements CommentService {
                 .orElseThrow(() -> new NotFoundException("Комментарий с id=" + commentId + " от пользователя с id=" + userId + " не найден"));
 
         commentRepository.delete(comment);
+        updateApprovedCount(comment.getEvent().getId(), comment.getStatus(), null);
         log.info("Comment id: {} deleted by user id: {}", commentId, userId);
     }
 
@@ -157,11 +164,18 @@ public class CommentServiceImpl implements CommentService {
             }
         }
 
-        LocalDateTime start = rangeStart != null ? LocalDateTime.parse(rangeStart) : LocalDateTime.now().minusYears(100);
-        LocalDateTime end = rangeEnd != null ? LocalDateTime.parse(rangeEnd) : LocalDateTime.now().plusYears(100);
+        LocalDateTime start = rangeStart != null ? LocalDateTime.parse(rangeStart) : null;
+        LocalDateTime end = rangeEnd != null ? LocalDateTime.parse(rangeEnd) : null;
 
+        // В запрос попадают только переданные фильтры
+        Specification<Comment> specification = Specification.where(CommentSpecifications.authorIn(users))
+                .and(CommentSpecifications.eventIn(events))
+                .and(CommentSpecifications.hasStatus(commentStatus))
+                .and(CommentSpecifications.createdNotBefore(start))
+                .and(CommentSpecifications.createdNotAfter(end));
+        // Страница считается как в остальных списках (PageRequest.of(from / size, size)), а не как смещение в строках
         Pageable pageable = PageRequest.of(from / size, size);
-        List<Comment> comments = commentRepository.findCommentsByAdmin(users, events, commentStatus, start, end, pageable);
+        List<Comment> comments = commentRepository.search(specification, (int) pageable.getOffset(), pageable.getPageSize());
 
         return comments.stream()
                 .map(commentMapper::toCommentDto)
@@ -182,8 +196,10 @@ public class CommentServiceImpl implements CommentService {
             throw new IllegalArgumentException("Неизвестный статус: " + status);
         }
 
+        CommentStatus previousStatus = comment.getStatus();
         comment.setStatus(newStatus);
         comment.setUpdatedOn(LocalDateTime.now());
+        updateApprovedCount(comment, previousStatus);
 
         Comment moderatedComment = commentRepository.save(comment);
         log.info("Comment id: {} moderated with status: {}", commentId, status);
@@ -196,14 +212,27 @@ public class CommentServiceImpl implements CommentService {
     public void deleteCommentByAdmin(Long commentId) {
         log.info("Deleting comment id: {} by admin", commentId);
 
-        if (!commentRepository.existsById(commentId)) {
-            throw new NotFoundException("Комментарий с id=" + commentId + " не найден");
-        }
+        Comment comment = getCommentById(commentId);
 
-        commentRepository.deleteById(commentId);
+        commentRepository.delete(comment);
+        updateApprovedCount(comment.getEvent().getId(), comment.getStatus(), null);
         log.info("Comment id: {} deleted by admin", commentId);
     }
 
+    private void updateApprovedCount(Comment comment, CommentStatus previousStatus) {
+        updateApprovedCount(comment.getEvent().getId(), previousStatus, comment.getStatus());
+    }
+
+    // Счетчик одобренных комментариев события меняется только при входе в статус APPROVED или выходе из него
+    private void updateApprovedCount(Long eventId, CommentStatus previousStatus, CommentStatus newStatus) {
+        long delta = (newStatus == CommentStatus.APPROVED ? 1 : 0) - (previousStatus == CommentStatus.APPROVED ? 1 : 0);
+        if (delta == 0) {
+            return;
+        }
+        eventRepository.addToCommentsCount(eventId, delta);
+        eventPublisher.publishEvent(EventListingChangedEvent.content(eventId));
+    }
+
     private User getUserById(Long userId) {
         return userRepository.findById(userId)
                 .orElseThrow(() -> new NotFoundException("Пользователь с id=" + userId + " не найден"));
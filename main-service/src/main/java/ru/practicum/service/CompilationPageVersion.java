@@ -0,0 +1,22 @@
+package ru.practicum.service;
+
+import ru.practicum.dto.CompilationDto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Версия страницы подборок (или одной подборки) вместе с данными, из которых она посчитана.
+ * Тело ответа собирается из них же: заявки и просмотры второй раз не считаются.
+ * Для закрепленных подборок из снимка тело уже готово (snapshotPage), счетчики не нужны.
+ */
+public record CompilationPageVersion(ResourceVersion version,
+                                     List<Long> compilationIds,
+                                     Map<Long, Long> confirmedRequests,
+                                     Map<Long, Long> views,
+                                     List<CompilationDto> snapshotPage) {
+
+    static CompilationPageVersion ofSnapshot(ResourceVersion version, List<CompilationDto> snapshotPage) {
+        return new CompilationPageVersion(version, List.of(), Map.of(), Map.of(), snapshotPage);
+    }
+}
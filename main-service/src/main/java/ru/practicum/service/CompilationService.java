@@ -13,7 +13,12 @@ public interface CompilationService {
 
     void deleteCompilation(Long compilationId);
 
-    List<CompilationDto> getCompilations(Boolean pinned, Integer from, Integer size);
+    // Тело ответа собирается из данных версии, см. CompilationPageVersion
+    List<CompilationDto> getCompilations(CompilationPageVersion version);
 
-    CompilationDto getCompilationById(Long compilationId);
+    CompilationDto getCompilationById(CompilationPageVersion version);
+
+    CompilationPageVersion getCompilationsVersion(Boolean pinned, Integer from, Integer size);
+
+    CompilationPageVersion getCompilationVersion(Long compilationId);
 }
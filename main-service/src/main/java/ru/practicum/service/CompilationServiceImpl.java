@@ -3,9 +3,19 @@ package ru.practicum.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.practicum.dto.CompilationDto;
 import ru.practicum.dto.NewCompilationDto;
 import ru.practicum.dto.UpdateCompilationRequest;
@@ -14,15 +24,18 @@ import ru.practicum.mapper.CompilationMapper;
 import ru.practicum.mapper.StatsMapper;
 import ru.practicum.model.Compilation;
 import ru.practicum.model.Event;
+import ru.practicum.model.enums.RequestStatus;
 import ru.practicum.repository.CompilationRepository;
+import ru.practicum.repository.CompilationsVersion;
 import ru.practicum.repository.EventRepository;
+import ru.practicum.repository.EventRequestCount;
 import ru.practicum.repository.ParticipationRequestRepository;
 import ru.practicum.service.client.StatsClient;
-import ru.practicum.service.dto.ViewStats;
 import ru.practicum.validator.DateValidator;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -38,6 +51,21 @@ public class CompilationServiceImpl implements CompilationService {
     private final StatsMapper statsMapper;
     private final DateValidator dateValidator;
     private final StatsClient statsClient;
+    private final PlatformTransactionManager transactionManager;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Закрепленные подборки (главная страница) держатся в памяти уже собранными
+    @Value("${ewm.compilations.pinned-snapshot.enabled:true}")
+    private boolean pinnedSnapshotEnabled;
+
+    // null - снимок еще не построен, чтение идет из БД
+    private volatile PinnedSnapshot pinnedSnapshot;
+
+    // Пересборки идут параллельно (планировщик, afterCommit, удаленные уведомления). Каждая получает номер
+    // при старте, и сохраняется результат только той, что начата позже уже сохраненной: начатая раньше
+    // могла не увидеть последний коммит
+    private final AtomicLong snapshotGenerations = new AtomicLong();
+    private long storedSnapshotGeneration;
 
     @Override
     @Transactional
@@ -48,6 +76,8 @@ public class CompilationServiceImpl implements CompilationService {
 
         Compilation savedCompilation = compilationRepository.save(compilation);
         log.info("Создана подборка с id: {}", savedCompilation.getId());
+        eventPublisher.publishEvent(new EntityChangedEvent(EntityChangedEvent.Type.COMPILATION, savedCompilation.getId()));
+        refreshPinnedSnapshotAfterCommit();
 
         return getCompilationWithStats(savedCompilation);
     }
@@ -63,8 +93,12 @@ public class CompilationServiceImpl implements CompilationService {
         if (updateRequest.getEvents() != null) {
             setEventsToCompilation(compilation, updateRequest.getEvents());
         }
+        // Изменение только состава событий не делает строку подборки грязной, отмечаем изменение явно
+        compilation.setUpdatedOn(LocalDateTime.now());
 
         Compilation updatedCompilation = compilationRepository.save(compilation);
+        eventPublisher.publishEvent(new EntityChangedEvent(EntityChangedEvent.Type.COMPILATION, compilationId));
+        refreshPinnedSnapshotAfterCommit();
 
         return getCompilationWithStats(updatedCompilation);
     }
@@ -78,96 +112,214 @@ public class CompilationServiceImpl implements CompilationService {
 
         compilationRepository.deleteById(compilationId);
         log.info("Удалена подборка с id: {}", compilationId);
+        eventPublisher.publishEvent(new EntityChangedEvent(EntityChangedEvent.Type.COMPILATION, compilationId));
+        refreshPinnedSnapshotAfterCommit();
     }
 
+    // Страница - те подборки, по которым посчитана версия, со счетчиками оттуда же
     @Override
-    public List<CompilationDto> getCompilations(Boolean pinned, Integer from, Integer size) {
-        dateValidator.validatePaginationParams(from, size);
-
-        Pageable pageable = PageRequest.of(from / size, size);
-
-        List<Compilation> compilations;
-        if (pinned != null) {
-            compilations = compilationRepository.findByPinned(pinned, pageable).getContent();
-        } else {
-            compilations = compilationRepository.findAll(pageable).getContent();
+    public List<CompilationDto> getCompilations(CompilationPageVersion version) {
+        if (version.snapshotPage() != null) {
+            return version.snapshotPage();
+        }
+        if (version.compilationIds().isEmpty()) {
+            return List.of();
         }
 
-        return compilations.stream()
-                .map(this::getCompilationWithStats)
+        List<Compilation> compilations = compilationRepository.findAllById(version.compilationIds()).stream()
+                .sorted(Comparator.comparing(Compilation::getId))
                 .collect(Collectors.toList());
+        return getCompilationsWithStats(compilations, version.confirmedRequests(), version.views());
     }
 
     @Override
-    public CompilationDto getCompilationById(Long compilationId) {
+    public CompilationDto getCompilationById(CompilationPageVersion version) {
+        Long compilationId = version.compilationIds().get(0);
         Compilation compilation = compilationRepository.findById(compilationId)
                 .orElseThrow(() -> new NotFoundException("Подборка с id=" + compilationId + " не найдена"));
 
-        return getCompilationWithStats(compilation);
+        return getCompilationsWithStats(List.of(compilation), version.confirmedRequests(), version.views()).get(0);
     }
 
-    private CompilationDto getCompilationWithStats(Compilation compilation) {
-        List<Event> events = new ArrayList<>(compilation.getEvents());
+    @Override
+    public CompilationPageVersion getCompilationsVersion(Boolean pinned, Integer from, Integer size) {
+        dateValidator.validatePaginationParams(from, size);
+
+        PinnedSnapshot snapshot = pinnedSnapshot;
+        if (Boolean.TRUE.equals(pinned) && snapshot != null) {
+            // Страница считается так же, как в запросе к БД: PageRequest.of(from / size, size)
+            List<CompilationDto> compilations = snapshot.compilations();
+            int offset = (from / size) * size;
+            List<CompilationDto> page = compilations.subList(Math.min(offset, compilations.size()),
+                    Math.min(offset + size, compilations.size()));
+            return CompilationPageVersion.ofSnapshot(
+                    ResourceVersion.withoutLastModified("pinned-compilations", snapshot.digest(), from, size), page);
+        }
+
+        // Порядок по id, как и в снимке закрепленных подборок
+        List<Long> ids = compilationRepository.findPageIds(pinned, PageRequest.of(from / size, size, Sort.by("id")));
+        return getVersion("compilations", ids);
+    }
+
+    @Override
+    public CompilationPageVersion getCompilationVersion(Long compilationId) {
+        if (!compilationRepository.existsById(compilationId)) {
+            throw new NotFoundException("Подборка с id=" + compilationId + " не найдена");
+        }
+        return getVersion("compilation", List.of(compilationId));
+    }
+
+    // Время изменения подборок, их событий и категорий плюс счетчики заявок и просмотров по событиям
+    private CompilationPageVersion getVersion(String resource, List<Long> compilationIds) {
+        if (compilationIds.isEmpty()) {
+            return new CompilationPageVersion(ResourceVersion.withoutLastModified(resource, compilationIds),
+                    compilationIds, Map.of(), Map.of(), null);
+        }
+
+        CompilationsVersion version = compilationRepository.getVersion(compilationIds);
+        List<Long> eventIds = compilationRepository.findEventIds(compilationIds);
+        Map<Long, Long> confirmedRequests = new TreeMap<>(getConfirmedRequestsByIds(eventIds));
+        Map<Long, Long> views = new TreeMap<>(getViewsByIds(eventIds));
+
+        ResourceVersion resourceVersion = ResourceVersion.withoutLastModified(resource, compilationIds,
+                version.getCompilationsUpdatedOn(), version.getEventsUpdatedOn(), version.getCategoriesUpdatedOn(),
+                confirmedRequests, views);
+        return new CompilationPageVersion(resourceVersion, compilationIds, confirmedRequests, views, null);
+    }
+
+    // Снимок пересобирается при старте, после изменений подборок и периодически - ради свежих просмотров
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${ewm.compilations.pinned-snapshot.refresh-interval:PT30S}",
+            initialDelayString = "${ewm.compilations.pinned-snapshot.refresh-interval:PT30S}")
+    public void refreshPinnedSnapshot() {
+        if (!pinnedSnapshotEnabled) {
+            return;
+        }
+        long generation = snapshotGenerations.incrementAndGet();
+        try {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.setReadOnly(true);
+            // Отдельная транзакция: при вызове из afterCommit исходная уже завершена
+            transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            List<CompilationDto> rebuilt = transactionTemplate.execute(status ->
+                    getCompilationsWithStats(compilationRepository.findByPinned(true, Sort.by("id"))));
+            PinnedSnapshot snapshot = new PinnedSnapshot(Collections.unmodifiableList(rebuilt),
+                    ResourceVersion.withoutLastModified(rebuilt).etag());
+            if (storePinnedSnapshot(generation, snapshot)) {
+                log.debug("Снимок закрепленных подборок обновлен: {} подборок", rebuilt.size());
+            } else {
+                log.debug("Снимок закрепленных подборок {} отброшен: уже сохранен более новый", generation);
+            }
+        } catch (Exception e) {
+            // Остается прежний снимок: лучше слегка устаревшая главная, чем ошибка
+            log.warn("Не удалось обновить снимок закрепленных подборок: {}", e.getMessage());
+        }
+    }
 
-        Map<Long, Long> confirmedRequests = getConfirmedRequests(events);
-        Map<Long, Long> views = getViews(events);
+    private synchronized boolean storePinnedSnapshot(long generation, PinnedSnapshot snapshot) {
+        if (generation < storedSnapshotGeneration) {
+            return false;
+        }
+        storedSnapshotGeneration = generation;
+        pinnedSnapshot = snapshot;
+        return true;
+    }
 
-        CompilationDto compilationDto = compilationMapper.toCompilationDto(compilation);
+    // Подборку изменил другой экземпляр сервиса
+    @EventListener
+    public void onRemoteInvalidation(RemoteInvalidation invalidation) {
+        if (invalidation.affects(EntityChangedEvent.Type.COMPILATION)) {
+            refreshPinnedSnapshot();
+        }
+    }
 
-        // Заполняем события с статистикой
-        if (!events.isEmpty()) {
-            compilationDto.setEvents(statsMapper.toEventShortDtoList(events, confirmedRequests, views));
+    private void refreshPinnedSnapshotAfterCommit() {
+        if (!pinnedSnapshotEnabled || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
         }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                refreshPinnedSnapshot();
+            }
+        });
+    }
+
+    private CompilationDto getCompilationWithStats(Compilation compilation) {
+        return getCompilationsWithStats(List.of(compilation)).get(0);
+    }
+
+    // Заявки и просмотры собираются один раз по всем событиям страницы, а затем раздаются по подборкам
+    private List<CompilationDto> getCompilationsWithStats(List<Compilation> compilations) {
+        Map<Long, Event> distinctEvents = new LinkedHashMap<>();
+        compilations.forEach(compilation -> compilation.getEvents()
+                .forEach(event -> distinctEvents.putIfAbsent(event.getId(), event)));
+        List<Event> events = new ArrayList<>(distinctEvents.values());
+
+        return getCompilationsWithStats(compilations, getConfirmedRequests(events), getViews(events));
+    }
 
-        return compilationDto;
+    private List<CompilationDto> getCompilationsWithStats(List<Compilation> compilations,
+                                                          Map<Long, Long> confirmedRequests,
+                                                          Map<Long, Long> views) {
+        return compilations.stream()
+                .map(compilation -> {
+                    CompilationDto compilationDto = compilationMapper.toCompilationDto(compilation);
+
+                    // Заполняем события с статистикой
+                    if (!compilation.getEvents().isEmpty()) {
+                        compilationDto.setEvents(statsMapper.toEventShortDtoList(
+                                new ArrayList<>(compilation.getEvents()), confirmedRequests, views));
+                    }
+                    return compilationDto;
+                })
+                .collect(Collectors.toList());
     }
 
     private Map<Long, Long> getConfirmedRequests(List<Event> events) {
-        if (events.isEmpty()) {
+        return getConfirmedRequestsByIds(events.stream().map(Event::getId).collect(Collectors.toList()));
+    }
+
+    private Map<Long, Long> getConfirmedRequestsByIds(List<Long> eventIds) {
+        if (eventIds.isEmpty()) {
             return Map.of();
         }
 
-        return events.stream()
-                .collect(Collectors.toMap(
-                        Event::getId,
-                        event -> requestRepository.countByEventAndStatus(event, ru.practicum.model.enums.RequestStatus.CONFIRMED)
-                ));
+        Map<Long, Long> result = requestRepository.countByEventIdsAndStatus(eventIds, RequestStatus.CONFIRMED).stream()
+                .collect(Collectors.toMap(EventRequestCount::getEventId, EventRequestCount::getCount));
+        eventIds.forEach(eventId -> result.putIfAbsent(eventId, 0L));
+        return result;
     }
 
     private Map<Long, Long> getViews(List<Event> events) {
-        if (events.isEmpty()) {
+        return getViewsByIds(events.stream().map(Event::getId).collect(Collectors.toList()));
+    }
+
+    private Map<Long, Long> getViewsByIds(List<Long> eventIds) {
+        if (eventIds.isEmpty()) {
             return Map.of();
         }
 
         try {
-            LocalDateTime start = LocalDateTime.now().minusYears(10);
-            LocalDateTime end = LocalDateTime.now().plusYears(1);
-
-            List<String> uris = events.stream()
-                    .map(event -> "/events/" + event.getId())
+            List<String> uris = eventIds.stream()
+                    .map(eventId -> "/events/" + eventId)
                     .collect(Collectors.toList());
 
-            List<ViewStats> stats = statsClient.getStats(start, end, uris, true);
-
-            return parseViewStats(stats);
+            return parseViews(statsClient.getViews(uris, true));
 
         } catch (Exception e) {
             log.warn("Не удалось получить статистику просмотров для подборки: {}", e.getMessage());
-            return events.stream()
-                    .collect(Collectors.toMap(Event::getId, event -> 0L));
+            return eventIds.stream()
+                    .collect(Collectors.toMap(eventId -> eventId, eventId -> 0L));
         }
     }
 
-    private Map<Long, Long> parseViewStats(List<ViewStats> viewStats) {
-        if (viewStats == null || viewStats.isEmpty()) {
-            return Map.of();
-        }
-
-        return viewStats.stream()
-                .filter(stats -> stats.getUri() != null && stats.getHits() != null)
+    private Map<Long, Long> parseViews(Map<String, Long> views) {
+        return views.entrySet().stream()
+                .filter(entry -> entry.getValue() != null)
                 .collect(Collectors.toMap(
-                        stats -> extractEventIdFromUri(stats.getUri()),
-                        ViewStats::getHits,
+                        entry -> extractEventIdFromUri(entry.getKey()),
+                        Map.Entry::getValue,
                         (existing, replacement) -> existing
                 ));
     }
@@ -196,4 +348,8 @@ public class CompilationServiceImpl implements CompilationService {
 
         compilation.setEvents(new HashSet<>(events));
     }
+
+    // Собранные закрепленные подборки и хэш их содержимого для ETag
+    private record PinnedSnapshot(List<CompilationDto> compilations, String digest) {
+    }
 }
@@ -0,0 +1,23 @@
+package ru.practicum.service;
+
+import java.time.Duration;
+
+/**
+ * Момент, к которому должен быть готов ответ. Создается в начале обработки запроса
+ * и передается в ожидания удаленных вызовов, чтобы их суммарное время не выходило за бюджет.
+ */
+public final class Deadline {
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static Deadline after(Duration budget) {
+        return new Deadline(System.nanoTime() + budget.toNanos());
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime()));
+    }
+}
@@ -0,0 +1,14 @@
+package ru.practicum.service;
+
+/**
+ * Изменение сущности, которая кэшируется локально (кэш второго уровня Hibernate, снимок подборок).
+ * Публикуется внутри транзакции; после коммита рассылается остальным экземплярам сервиса.
+ */
+public record EntityChangedEvent(Type type, Long id) {
+
+    public enum Type {
+        CATEGORY,
+        USER,
+        COMPILATION
+    }
+}
@@ -0,0 +1,39 @@
+package ru.practicum.service;
+
+import java.util.Set;
+
+/**
+ * Изменение, влияющее на публичные списки событий. Публикуется внутри транзакции,
+ * кэш списков сбрасывает затронутые записи после коммита.
+ *
+ * @param eventId     событие, данные которого изменились; null, если изменилась только категория
+ * @param categoryIds категории, в списках которых событие могло появиться или исчезнуть
+ * @param scope       какие списки могут измениться по составу
+ */
+public record EventListingChangedEvent(Long eventId, Set<Long> categoryIds, Scope scope) {
+
+    public enum Scope {
+        // Меняются только данные события в уже найденных списках
+        CONTENT,
+        // Меняется доступность: событие может появиться или исчезнуть в списках onlyAvailable
+        AVAILABILITY,
+        // Событие может появиться или исчезнуть в любых списках своих категорий
+        MEMBERSHIP
+    }
+
+    public static EventListingChangedEvent membership(Long eventId, Set<Long> categoryIds) {
+        return new EventListingChangedEvent(eventId, categoryIds, Scope.MEMBERSHIP);
+    }
+
+    public static EventListingChangedEvent content(Long eventId) {
+        return new EventListingChangedEvent(eventId, Set.of(), Scope.CONTENT);
+    }
+
+    public static EventListingChangedEvent availability(Long eventId, Long categoryId) {
+        return new EventListingChangedEvent(eventId, Set.of(categoryId), Scope.AVAILABILITY);
+    }
+
+    public static EventListingChangedEvent category(Long categoryId) {
+        return new EventListingChangedEvent(null, Set.of(categoryId), Scope.MEMBERSHIP);
+    }
+}
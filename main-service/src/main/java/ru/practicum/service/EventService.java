@@ -28,7 +28,10 @@ public interface EventService {
                                         LocalDateTime rangeStart, LocalDateTime rangeEnd,
                                         Boolean onlyAvailable, String sort, Integer from, Integer size);
 
-    EventFullDto getPublicEventById(Long eventId, String clientIp);
+    EventFullDto getPublicEventById(PublicEventVersion version);
+
+    // Учитывает просмотр события и возвращает его версию со счетчиками, уже включающими этот просмотр
+    PublicEventVersion viewPublicEvent(Long eventId, String clientIp);
 
     void saveHit(String app, String uri, String ip);
 }
@@ -2,10 +2,14 @@ package ru.practicum.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.config.LatencyBudgetProperties;
 import ru.practicum.exception.ValidationException;
 import ru.practicum.mapper.LocationMapper;
 import ru.practicum.model.*;
@@ -22,11 +26,16 @@ import ru.practicum.exception.NotFoundException;
 import ru.practicum.mapper.EventMapper;
 import ru.practicum.mapper.StatsMapper;
 import ru.practicum.model.enums.EventState;
-import ru.practicum.service.dto.ViewStats;
+import ru.practicum.service.dto.EndpointHit;
+import ru.practicum.service.dto.TrendingStats;
 import ru.practicum.validator.DateValidator;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -45,6 +54,14 @@ public class EventServiceImpl implements EventService {
     private final DateValidator dateValidator;
     private final LocationRepository locationRepository;
     private final LocationMapper locationMapper;
+    private final LatencyBudgetProperties latencyBudget;
+    private final PublicEventsCache publicEventsCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Outbox outbox;
+
+    // Сколько самых популярных URI запрашивать у сервиса статистики для сортировки TRENDING
+    @Value("${ewm.trending.top-k:1000}")
+    private int trendingTopK;
 
     @Override
     @Transactional
@@ -83,32 +100,36 @@ public class EventServiceImpl implements EventService {
 
     @Override
     public List<EventShortDto> getUserEvents(Long userId, Integer from, Integer size) {
+        Deadline deadline = Deadline.after(latencyBudget.forEndpoint("user-events"));
         User user = getUserById(userId);
 
         Pageable pageable = PageRequest.of(from / size, size);
         List<Event> events = eventRepository.findByInitiator(user, pageable).getContent();
 
+        // Запрос просмотров идет параллельно с подсчетом заявок в БД
+        PendingViews views = getViewsAsync(events);
         Map<Long, Long> confirmedRequests = getConfirmedRequests(events);
-        Map<Long, Long> views = getViews(events);
 
-        return statsMapper.toEventShortDtoList(events, confirmedRequests, views);
+        return statsMapper.toEventShortDtoList(events, confirmedRequests, awaitViews(views, deadline));
     }
 
     @Override
     public EventFullDto getUserEventById(Long userId, Long eventId) {
+        Deadline deadline = Deadline.after(latencyBudget.forEndpoint("user-event"));
         User user = getUserById(userId);
 
         Event event = getEventByUserAndId(eventId, user);
 
+        PendingViews views = getViewsAsync(List.of(event));
         Long confirmedRequests = requestRepository.countByEventAndStatus(event, ru.practicum.model.enums.RequestStatus.CONFIRMED);
-        Long views = getViews(List.of(event)).getOrDefault(eventId, 0L);
 
-        return eventMapper.toEventFullDto(event, confirmedRequests, views);
+        return eventMapper.toEventFullDto(event, confirmedRequests, awaitViews(views, deadline).getOrDefault(eventId, 0L));
     }
 
     @Override
     @Transactional
     public EventFullDto updateEventByUser(Long userId, Long eventId, UpdateEventUserRequest updateEvent) {
+        Deadline deadline = Deadline.after(latencyBudget.forEndpoint("user-event-update"));
         User user = getUserById(userId);
 
         Event event = getEventByUserAndId(eventId, user);
@@ -129,12 +150,13 @@ public class EventServiceImpl implements EventService {
             event.setCategory(category);
         }
 
+        PendingViews views = getViewsAsync(List.of(event));
         Event updatedEvent = eventRepository.save(event);
 
         Long confirmedRequests = requestRepository.countByEventAndStatus(event, ru.practicum.model.enums.RequestStatus.CONFIRMED);
-        Long views = getViews(List.of(event)).getOrDefault(eventId, 0L);
 
-        return eventMapper.toEventFullDto(updatedEvent, confirmedRequests, views);
+        return eventMapper.toEventFullDto(updatedEvent, confirmedRequests,
+                awaitViews(views, deadline).getOrDefault(eventId, 0L));
     }
 
 
@@ -145,6 +167,7 @@ public class EventServiceImpl implements EventService {
                                                   Integer from, Integer size) {
         try {
             log.info("=== SEARCH_EVENTS_BY_ADMIN OPTIMIZED ===");
+            Deadline deadline = Deadline.after(latencyBudget.forEndpoint("admin-events"));
 
             // 1. Сначала найти ID событий которые подходят под фильтры
             List<Event> filteredEvents = eventRepository.findAll().stream()
@@ -160,11 +183,11 @@ public class EventServiceImpl implements EventService {
             int end = Math.min(from + size, filteredEvents.size());
             List<Event> paginatedEvents = filteredEvents.subList(start, end);
 
-            // 3. Получить confirmedRequests только для пагинированных событий
+            // 3. Получить confirmedRequests только для пагинированных событий, параллельно с просмотрами
+            PendingViews views = getViewsAsync(paginatedEvents);
             Map<Long, Long> confirmedRequests = getConfirmedRequests(paginatedEvents);
-            Map<Long, Long> views = getViews(paginatedEvents);
 
-            return statsMapper.toEventFullDtoList(paginatedEvents, confirmedRequests, views);
+            return statsMapper.toEventFullDtoList(paginatedEvents, confirmedRequests, awaitViews(views, deadline));
 
         } catch (Exception e) {
             log.error("Error in searchEventsByAdmin: ", e);
@@ -176,6 +199,7 @@ public class EventServiceImpl implements EventService {
     @Override
     @Transactional
     public EventFullDto updateEventByAdmin(Long eventId, UpdateEventAdminRequest updateEvent) {
+        Deadline deadline = Deadline.after(latencyBudget.forEndpoint("admin-event-update"));
         Event event = eventRepository.findById(eventId)
                 .orElseThrow(() -> new NotFoundException("Событие с id=" + eventId + " не найдено"));
 
@@ -195,6 +219,7 @@ public class EventServiceImpl implements EventService {
             }
         }
 
+        Long previousCategoryId = event.getCategory().getId();
         eventMapper.updateEventFromAdminRequest(updateEvent, event);
 
         if (updateEvent.getCategory() != null) {
@@ -203,12 +228,16 @@ public class EventServiceImpl implements EventService {
             event.setCategory(category);
         }
 
+        PendingViews views = getViewsAsync(List.of(event));
         Event updatedEvent = eventRepository.save(event);
+        // Событие могло появиться в поиске (публикация), сменить категорию или данные
+        eventPublisher.publishEvent(EventListingChangedEvent.membership(eventId,
+                Set.copyOf(List.of(previousCategoryId, updatedEvent.getCategory().getId()))));
 
         Long confirmedRequests = requestRepository.countByEventAndStatus(event, ru.practicum.model.enums.RequestStatus.CONFIRMED);
-        Long views = getViews(List.of(event)).getOrDefault(eventId, 0L);
 
-        return eventMapper.toEventFullDto(updatedEvent, confirmedRequests, views);
+        return eventMapper.toEventFullDto(updatedEvent, confirmedRequests,
+                awaitViews(views, deadline).getOrDefault(eventId, 0L));
     }
 
 
@@ -221,11 +250,21 @@ public class EventServiceImpl implements EventService {
             throw new ValidationException("Дата начала не может быть позже даты окончания");
         }
 
+        dateValidator.validatePaginationParams(from, size);
+
+        PublicEventsCache.Key key = PublicEventsCache.Key.of(text, categories, paid, rangeStart, rangeEnd,
+                onlyAvailable, sort, from, size);
+        return publicEventsCache.get(key, () -> loadPublicEvents(text, categories, paid, rangeStart, rangeEnd,
+                onlyAvailable, sort, from, size));
+    }
+
+    private List<EventShortDto> loadPublicEvents(String text, List<Long> categories, Boolean paid,
+                                                 LocalDateTime rangeStart, LocalDateTime rangeEnd,
+                                                 Boolean onlyAvailable, String sort, Integer from, Integer size) {
+        Deadline deadline = Deadline.after(latencyBudget.forEndpoint("public-events"));
         try {
             log.info("Getting public events with params: text={}, categories={}, paid={}", text, categories, paid);
 
-            dateValidator.validatePaginationParams(from, size);
-
             // Устанавливаем диапазон дат по умолчанию
             if (rangeStart == null) {
                 rangeStart = LocalDateTime.now();
@@ -250,10 +289,11 @@ public class EventServiceImpl implements EventService {
             int endIndex = Math.min(from + size, filteredEvents.size());
             List<Event> paginatedEvents = filteredEvents.subList(startIndex, endIndex);
 
+            PendingViews views = getViewsAsync(paginatedEvents);
             Map<Long, Long> confirmedRequests = getConfirmedRequests(paginatedEvents);
-            Map<Long, Long> views = getViews(paginatedEvents);
 
-            List<EventShortDto> result = statsMapper.toEventShortDtoList(paginatedEvents, confirmedRequests, views);
+            List<EventShortDto> result = statsMapper.toEventShortDtoList(paginatedEvents, confirmedRequests,
+                    awaitViews(views, deadline));
 
             // Дополнительная сортировка по просмотрам для DTO
             if ("VIEWS".equals(sort)) {
@@ -269,16 +309,46 @@ public class EventServiceImpl implements EventService {
         }
     }
 
+    // Вне транзакции класса: appendDetached берет соединение сам, второе соединение на запрос не нужно
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void saveHit(String app, String uri, String ip) {
         try {
-            statsClient.saveHit(app, uri, ip);
+            // Короткая локальная вставка; в сервис статистики хит отправит OutboxRelay
+            outbox.appendDetached(StatsHitsOutboxConsumer.TOPIC, statsClient.createHit(app, uri, ip));
             log.debug("Hit сохранен: app={}, uri={}, ip={}", app, uri, ip);
         } catch (Exception e) {
             log.warn("Ошибка сохранения hit: {}", e.getMessage());
         }
     }
 
+    // Хит записывается в outbox и сразу отправляется сам, после чего закэшированные просмотры uri
+    // считаются устаревшими: следующий запрос просмотров уже учтет этот хит. Если сервер статистики
+    // недоступен, хит доставит OutboxRelay, а в ответ попадут прежние просмотры
+    private void saveHitAndExpireViews(String app, String uri, String ip) {
+        EndpointHit hit = statsClient.createHit(app, uri, ip);
+        Long messageId;
+        try {
+            messageId = outbox.appendDetached(StatsHitsOutboxConsumer.TOPIC, hit);
+        } catch (Exception e) {
+            log.warn("Ошибка сохранения hit: {}", e.getMessage());
+            return;
+        }
+        try {
+            statsClient.sendHits(List.of(hit));
+            statsClient.expireViews(List.of(uri), true);
+        } catch (Exception e) {
+            log.debug("Хит {} будет доставлен через outbox: {}", hit.getId(), e.getMessage());
+            return;
+        }
+        try {
+            // Повторная доставка безопасна (сервер отбрасывает известные идентификаторы), удаление лишь экономит ее
+            outbox.discard(messageId);
+        } catch (Exception e) {
+            log.debug("Хит {} уже доставлен, но остался в outbox: {}", hit.getId(), e.getMessage());
+        }
+    }
+
 
     private List<Event> getBasePublishedEvents() {
         return eventRepository.findByState(EventState.PUBLISHED);
@@ -312,11 +382,35 @@ public class EventServiceImpl implements EventService {
 
         if ("EVENT_DATE".equals(sort)) {
             sortedEvents.sort(Comparator.comparing(Event::getEventDate));
+        } else if ("TRENDING".equals(sort)) {
+            Map<Long, Double> scores = getTrendingScores();
+            sortedEvents.sort(Comparator.comparing((Event event) -> scores.getOrDefault(event.getId(), 0.0))
+                    .reversed()
+                    .thenComparing(Event::getEventDate));
         }
 
         return sortedEvents;
     }
 
+    // Один запрос топа популярных URI вместо запроса статистики по каждому событию
+    private Map<Long, Double> getTrendingScores() {
+        try {
+            List<TrendingStats> trending = statsClient.getTrending(trendingTopK);
+
+            return trending.stream()
+                    .filter(stats -> stats.getUri() != null && stats.getUri().startsWith("/events/"))
+                    .filter(stats -> stats.getScore() != null)
+                    .collect(Collectors.toMap(
+                            stats -> extractEventIdFromUri(stats.getUri()),
+                            TrendingStats::getScore,
+                            Double::sum
+                    ));
+        } catch (Exception e) {
+            log.warn("Не удалось получить популярные события: {}", e.getMessage());
+            return Map.of();
+        }
+    }
+
 
 
     private boolean isEventAvailable(Event event) {
@@ -335,7 +429,8 @@ public class EventServiceImpl implements EventService {
 
 
     @Override
-    public EventFullDto getPublicEventById(Long eventId, String clientIp) {
+    public EventFullDto getPublicEventById(PublicEventVersion version) {
+        Long eventId = version.eventId();
         Event event = eventRepository.findById(eventId)
                 .orElseThrow(() -> new NotFoundException("Событие с id=" + eventId + " не найдено"));
 
@@ -343,82 +438,119 @@ public class EventServiceImpl implements EventService {
             throw new NotFoundException("Событие с id=" + eventId + " не опубликовано");
         }
 
-        // 1. СОХРАНЯЕМ HIT
-        saveHit("ewm-main-service", "/events/" + eventId, clientIp);
-
-        // 2. ПОЛУЧАЕМ СТАТИСТИКУ ТОЛЬКО ДЛЯ УНИКАЛЬНЫХ IP
-        Long views = getViews(List.of(event)).getOrDefault(eventId, 0L);
-
-        log.info("Событие {}: уникальные просмотры = {} (IP: {})", eventId, views, clientIp);
-
-        Long confirmedRequests = requestRepository.countByEventAndStatus(event, RequestStatus.CONFIRMED);
+        // Счетчики уже посчитаны для версии и включают этот просмотр
+        log.info("Событие {}: уникальные просмотры = {}", eventId, version.views());
 
-        return eventMapper.toEventFullDto(event, confirmedRequests, views);
+        return eventMapper.toEventFullDto(event, version.confirmedRequests(), version.views());
     }
 
 
-    private Map<Long, Long> getConfirmedRequests(List<Event> events) {
+    // Версия строится из времени изменения и заявок; просмотры входят в нее огрубленными (viewsBucket),
+    // иначе ETag менялся бы с каждым новым IP. Комментарии отдельно не нужны: их счетчик обновляет updated_on.
+    // Без транзакции: ни отправка хита, ни ожидание просмотров не держат соединение из пула
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public PublicEventVersion viewPublicEvent(Long eventId, String clientIp) {
+        Deadline deadline = Deadline.after(latencyBudget.forEndpoint("public-event"));
+        EventVersion version = eventRepository.findVersionById(eventId)
+                .orElseThrow(() -> new NotFoundException("Событие с id=" + eventId + " не найдено"));
 
-        if (events.isEmpty()) {
-            return Map.of();
+        if (version.getState() != EventState.PUBLISHED) {
+            throw new NotFoundException("Событие с id=" + eventId + " не опубликовано");
         }
 
-        Map<Long, Long> result = new HashMap<>();
+        // 1. СОХРАНЯЕМ HIT ДО ЧТЕНИЯ ПРОСМОТРОВ, ЧТОБЫ ОТВЕТ УЧИТЫВАЛ И ЭТОТ ВИЗИТ
+        saveHitAndExpireViews("ewm-main-service", "/events/" + eventId, clientIp);
 
-        for (Event event : events) {
-            try {
-                List<ParticipationRequest> allRequests = requestRepository.findByEvent(event);
+        // 2. ЗАПРАШИВАЕМ СТАТИСТИКУ ТОЛЬКО ДЛЯ УНИКАЛЬНЫХ IP, ПОКА СЧИТАЕМ ЗАЯВКИ
+        PendingViews pendingViews = getViewsByIdsAsync(List.of(eventId));
+        long confirmedRequests = requestRepository.countByEventIdsAndStatus(List.of(eventId), RequestStatus.CONFIRMED)
+                .stream()
+                .map(EventRequestCount::getCount)
+                .findFirst()
+                .orElse(0L);
 
-                List<ParticipationRequest> confirmedRequests = requestRepository.findByEventAndStatus(event, RequestStatus.CONFIRMED);
+        long views = awaitViews(pendingViews, deadline).getOrDefault(eventId, 0L);
 
-                Long count = requestRepository.countByEventAndStatus(event, RequestStatus.CONFIRMED);
+        ResourceVersion resourceVersion = ResourceVersion.withoutLastModified("event", eventId, version.getUpdatedOn(),
+                version.getCategoryUpdatedOn(), confirmedRequests, viewsBucket(views));
+        return new PublicEventVersion(eventId, resourceVersion, confirmedRequests, views);
+    }
 
-                result.put(event.getId(), count != null ? count : 0L);
-            } catch (Exception e) {
-                result.put(event.getId(), 0L);
-            }
+    // Первая значащая цифра: 0..9, 10, 20, ..., 100, 200, ...; копия, подтвержденная 304,
+    // может отставать по просмотрам в пределах ступени
+    private static long viewsBucket(long views) {
+        long step = 1;
+        while (views / step >= 10) {
+            step *= 10;
         }
-
-        return result;
+        return views / step * step;
     }
 
-    private Map<Long, Long> getViews(List<Event> events) {
+
+    private Map<Long, Long> getConfirmedRequests(List<Event> events) {
+
         if (events.isEmpty()) {
             return Map.of();
         }
 
-        try {
-            LocalDateTime start = LocalDateTime.now().minusYears(1);
-            LocalDateTime end = LocalDateTime.now();
-            List<String> uris = events.stream()
-                    .map(event -> "/events/" + event.getId())
-                    .collect(Collectors.toList());
+        // Один сгруппированный запрос вместо запросов по каждому событию
+        List<Long> eventIds = events.stream().map(Event::getId).collect(Collectors.toList());
+        Map<Long, Long> result = requestRepository.countByEventIdsAndStatus(eventIds, RequestStatus.CONFIRMED).stream()
+                .collect(Collectors.toMap(EventRequestCount::getEventId, EventRequestCount::getCount));
+        eventIds.forEach(eventId -> result.putIfAbsent(eventId, 0L));
+
+        return result;
+    }
 
-            // Получаем статистику
-            List<ViewStats> stats = statsClient.getStats(start, end, uris, true);
+    // Просмотры за все время берутся из кэша клиента статистики; запрос не блокирует вызывающий поток
+    private PendingViews getViewsAsync(List<Event> events) {
+        return getViewsByIdsAsync(events.stream().map(Event::getId).collect(Collectors.toList()));
+    }
 
-            Map<Long, Long> result = parseViewStats(stats);
+    private PendingViews getViewsByIdsAsync(List<Long> eventIds) {
+        if (eventIds.isEmpty()) {
+            return new PendingViews(List.of(), CompletableFuture.completedFuture(Map.of()));
+        }
 
-            return result;
+        List<String> uris = eventIds.stream()
+                .map(eventId -> "/events/" + eventId)
+                .collect(Collectors.toList());
 
-        } catch (Exception e) {
-            log.warn("Не удалось получить статистику просмотров: {}", e.getMessage());
-            return events.stream()
-                    .collect(Collectors.toMap(Event::getId, event -> 0L));
+        return new PendingViews(uris, statsClient.getViewsAsync(uris, true).thenApply(this::parseViews));
+    }
+
+    // Ждет просмотры не дольше остатка бюджета; если не успели, отдаются последние известные значения
+    // из кэша клиента статистики (даже устаревшие), а загрузка продолжается в фоне к следующему запросу
+    private Map<Long, Long> awaitViews(PendingViews views, Deadline deadline) {
+        try {
+            return views.future().get(deadline.remaining().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Статистика просмотров не получена в пределах бюджета времени, отдаем последние известные");
+            return getKnownViews(views.uris());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return getKnownViews(views.uris());
+        } catch (ExecutionException e) {
+            log.warn("Не удалось получить статистику просмотров: {}", e.getCause().getMessage());
+            return getKnownViews(views.uris());
         }
     }
 
+    private Map<Long, Long> getKnownViews(List<String> uris) {
+        return uris.isEmpty() ? Map.of() : parseViews(statsClient.getKnownViews(uris, true));
+    }
+
+    private record PendingViews(List<String> uris, CompletableFuture<Map<Long, Long>> future) {
+    }
 
-    private Map<Long, Long> parseViewStats(List<ViewStats> viewStats) {
-        if (viewStats == null || viewStats.isEmpty()) {
-            return Map.of();
-        }
 
-        return viewStats.stream()
-                .filter(stats -> stats.getUri() != null && stats.getHits() != null)
+    private Map<Long, Long> parseViews(Map<String, Long> views) {
+        return views.entrySet().stream()
+                .filter(entry -> entry.getValue() != null)
                 .collect(Collectors.toMap(
-                        stats -> extractEventIdFromUri(stats.getUri()), // Извлекаем eventId из URI
-                        ViewStats::getHits,
+                        entry -> extractEventIdFromUri(entry.getKey()), // Извлекаем eventId из URI
+                        Map.Entry::getValue,
                         (existing, replacement) -> existing // При дубликатах берем существующее значение
                 ));
     }
@@ -0,0 +1,58 @@
+package ru.practicum.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.model.OutboxMessage;
+import ru.practicum.repository.OutboxRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Запись сообщений в outbox. Доставку выполняет {@link OutboxRelay}.
+ */
+@Component
+@RequiredArgsConstructor
+public class Outbox {
+
+    private final OutboxRepository outboxRepository;
+    private final ObjectMapper objectMapper;
+
+    // В транзакции вызывающего: сообщение появится только вместе с изменением, которое оно описывает
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(String topic, Object payload) {
+        outboxRepository.save(toMessage(topic, payload));
+    }
+
+    // Отдельная короткая транзакция для вызовов вне транзакций; возвращает идентификатор сообщения
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public Long appendDetached(String topic, Object payload) {
+        return outboxRepository.save(toMessage(topic, payload)).getId();
+    }
+
+    // Сообщение уже доставлено в обход OutboxRelay. Если релей успел его захватить, он доставит его
+    // еще раз, поэтому так можно поступать только с сообщениями, повторная доставка которых безопасна
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void discard(Long id) {
+        outboxRepository.deleteAllByIdInBatch(List.of(id));
+    }
+
+    private OutboxMessage toMessage(String topic, Object payload) {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            return OutboxMessage.builder()
+                    .topic(topic)
+                    .payload(objectMapper.writeValueAsString(payload))
+                    .createdOn(now)
+                    .attempts(0)
+                    .nextAttemptAt(now)
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Не удалось сериализовать сообщение для топика " + topic, e);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package ru.practicum.service;
+
+import ru.practicum.model.OutboxMessage;
+
+import java.util.List;
+
+/**
+ * Получатель сообщений одного топика outbox. Доставка пачкой вне транзакции: исключение означает,
+ * что пачка не доставлена и будет повторена, поэтому получатель должен переносить повторы.
+ */
+public interface OutboxConsumer {
+    String topic();
+
+    void deliver(List<OutboxMessage> messages) throws Exception;
+
+    // Ошибка, которую повтор не исправит (например, получатель отверг сообщение): такие сообщения не повторяются
+    default boolean isPermanentFailure(Exception e) {
+        return false;
+    }
+}
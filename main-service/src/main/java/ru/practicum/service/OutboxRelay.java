@@ -0,0 +1,256 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.model.OutboxMessage;
+import ru.practicum.repository.OutboxRepository;
+import ru.practicum.repository.OutboxTopicBacklog;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Разбирает outbox пачками и передает сообщения получателям топиков.
+ * Пачка захватывается короткой транзакцией (FOR UPDATE SKIP LOCKED) и откладывается на время аренды,
+ * доставка идет уже без блокировок и соединения из пула, результат фиксируется второй короткой транзакцией.
+ * Если экземпляр упал во время доставки, пачку после окончания аренды заберет другой.
+ * Каждый топик разбирается по своему расписанию, поэтому медленный получатель не задерживает остальные.
+ * При ошибке сообщения откладываются с экспоненциальной задержкой, после max-attempts попыток
+ * или при окончательном отказе получателя переносятся в outbox_dead_letter.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "ewm.outbox.relay.enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxRelay {
+
+    private final OutboxRepository outboxRepository;
+    private final Map<String, OutboxConsumer> consumers;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskScheduler taskScheduler;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Backlog> backlogs = new ConcurrentHashMap<>();
+    private final List<ScheduledFuture<?>> schedules = new ArrayList<>();
+
+    @Value("${ewm.outbox.relay.poll-interval:PT0.5S}")
+    private Duration pollInterval;
+
+    @Value("${ewm.outbox.relay.batch-size:500}")
+    private int batchSize;
+
+    @Value("${ewm.outbox.relay.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    @Value("${ewm.outbox.relay.lease:PT1M}")
+    private Duration lease;
+
+    @Value("${ewm.outbox.relay.retry-min-delay:PT1S}")
+    private Duration retryMinDelay;
+
+    @Value("${ewm.outbox.relay.retry-max-delay:PT5M}")
+    private Duration retryMaxDelay;
+
+    @Value("${ewm.outbox.relay.max-attempts:20}")
+    private int maxAttempts;
+
+    public OutboxRelay(OutboxRepository outboxRepository,
+                       List<OutboxConsumer> consumers,
+                       PlatformTransactionManager transactionManager,
+                       TaskScheduler taskScheduler,
+                       MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.consumers = consumers.stream().collect(Collectors.toMap(OutboxConsumer::topic, Function.identity()));
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.taskScheduler = taskScheduler;
+        this.meterRegistry = meterRegistry;
+        this.consumers.keySet().forEach(this::backlog);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        consumers.values().forEach(consumer ->
+                schedules.add(taskScheduler.scheduleWithFixedDelay(() -> relay(consumer), pollInterval)));
+        log.info("Разбор outbox запущен для топиков: {}", consumers.keySet());
+    }
+
+    @PreDestroy
+    public void stop() {
+        schedules.forEach(schedule -> schedule.cancel(false));
+    }
+
+    void relay(OutboxConsumer consumer) {
+        try {
+            for (int i = 0; i < maxBatchesPerRun; i++) {
+                if (relayBatch(consumer) < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Ошибка разбора outbox для топика {}: {}", consumer.topic(), e.getMessage());
+        }
+    }
+
+    // Отставание считается отдельно от доставки, чтобы метрики обновлялись и когда получатель недоступен
+    @Scheduled(fixedDelayString = "${ewm.outbox.relay.lag-refresh-interval:PT10S}")
+    public void refreshBacklog() {
+        try {
+            Map<String, OutboxTopicBacklog> current = outboxRepository.getBacklog().stream()
+                    .collect(Collectors.toMap(OutboxTopicBacklog::getTopic, Function.identity()));
+            LocalDateTime now = LocalDateTime.now();
+            backlogs.forEach((topic, backlog) -> {
+                OutboxTopicBacklog topicBacklog = current.get(topic);
+                backlog.pending = topicBacklog == null ? 0 : topicBacklog.getPending();
+                backlog.lagSeconds = topicBacklog == null || topicBacklog.getOldest() == null
+                        ? 0
+                        : Duration.between(topicBacklog.getOldest(), now).toMillis() / 1000.0;
+            });
+            current.keySet().stream()
+                    .filter(topic -> !consumers.containsKey(topic))
+                    .forEach(topic -> log.warn("В outbox есть сообщения топика {} без получателя", topic));
+        } catch (Exception e) {
+            log.warn("Не удалось обновить отставание outbox: {}", e.getMessage());
+        }
+    }
+
+    private int relayBatch(OutboxConsumer consumer) {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxMessage> batch = transactionTemplate.execute(status ->
+                outboxRepository.claimBatch(consumer.topic(), now, now.plus(lease), batchSize));
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+        Backlog backlog = backlog(consumer.topic());
+        try {
+            consumer.deliver(batch);
+            complete(batch);
+            backlog.delivered.increment(batch.size());
+            return batch.size();
+        } catch (Exception e) {
+            if (consumer.isPermanentFailure(e) && batch.size() > 1) {
+                // Пачку отверг получатель: ищем виновные сообщения по одному, чтобы не задерживать остальные
+                log.warn("Получатель топика {} отклонил пачку из {} сообщений, доставляем по одному: {}",
+                        consumer.topic(), batch.size(), e.getMessage());
+                deliverOneByOne(consumer, batch, backlog);
+            } else {
+                fail(consumer, batch, e, backlog);
+            }
+            return 0;
+        }
+    }
+
+    private void deliverOneByOne(OutboxConsumer consumer, List<OutboxMessage> batch, Backlog backlog) {
+        for (int i = 0; i < batch.size(); i++) {
+            OutboxMessage message = batch.get(i);
+            try {
+                consumer.deliver(List.of(message));
+                complete(List.of(message));
+                backlog.delivered.increment();
+            } catch (Exception e) {
+                if (!consumer.isPermanentFailure(e)) {
+                    // Временная ошибка: оставшиеся сообщения повторим позже вместе
+                    fail(consumer, batch.subList(i, batch.size()), e, backlog);
+                    return;
+                }
+                fail(consumer, List.of(message), e, backlog);
+            }
+        }
+    }
+
+    private void complete(List<OutboxMessage> messages) {
+        transactionTemplate.executeWithoutResult(status ->
+                outboxRepository.deleteAllByIdInBatch(messages.stream().map(OutboxMessage::getId).toList()));
+    }
+
+    private void fail(OutboxConsumer consumer, List<OutboxMessage> messages, Exception error, Backlog backlog) {
+        boolean permanent = consumer.isPermanentFailure(error);
+        Set<Long> deadIds = messages.stream()
+                .filter(message -> permanent || message.getAttempts() + 1 >= maxAttempts)
+                .map(OutboxMessage::getId)
+                .collect(Collectors.toSet());
+        Map<Integer, List<Long>> retryIdsByAttempts = messages.stream()
+                .filter(message -> !deadIds.contains(message.getId()))
+                .collect(Collectors.groupingBy(message -> message.getAttempts() + 1,
+                        Collectors.mapping(OutboxMessage::getId, Collectors.toList())));
+
+        LocalDateTime now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status -> {
+            retryIdsByAttempts.forEach((attempts, ids) ->
+                    outboxRepository.scheduleRetry(ids, now.plus(retryDelay(attempts))));
+            if (!deadIds.isEmpty()) {
+                outboxRepository.moveToDeadLetter(deadIds, now, abbreviate(error.getMessage()));
+            }
+        });
+
+        backlog.failed.increment(messages.size() - deadIds.size());
+        backlog.deadLettered.increment(deadIds.size());
+        if (deadIds.isEmpty()) {
+            log.warn("Не удалось доставить {} сообщений топика {}: {}", messages.size(), consumer.topic(), error.getMessage());
+        } else {
+            log.error("Сообщения топика {} перенесены в outbox_dead_letter: {} из {}, причина: {}",
+                    consumer.topic(), deadIds.size(), messages.size(), error.getMessage());
+        }
+    }
+
+    private Duration retryDelay(int attempts) {
+        Duration delay = retryMinDelay.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(retryMaxDelay) > 0 ? retryMaxDelay : delay;
+    }
+
+    private static String abbreviate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+
+    private Backlog backlog(String topic) {
+        return backlogs.computeIfAbsent(topic, t -> new Backlog(t, meterRegistry));
+    }
+
+    private static class Backlog {
+        private volatile long pending;
+        private volatile double lagSeconds;
+        private final Counter delivered;
+        private final Counter failed;
+        private final Counter deadLettered;
+
+        Backlog(String topic, MeterRegistry meterRegistry) {
+            Gauge.builder("ewm.outbox.pending", this, b -> b.pending)
+                    .description("Недоставленные сообщения outbox")
+                    .tag("topic", topic)
+                    .register(meterRegistry);
+            Gauge.builder("ewm.outbox.lag", this, b -> b.lagSeconds)
+                    .description("Возраст самого старого недоставленного сообщения outbox")
+                    .baseUnit("seconds")
+                    .tag("topic", topic)
+                    .register(meterRegistry);
+            this.delivered = Counter.builder("ewm.outbox.messages").tag("topic", topic).tag("result", "delivered")
+                    .register(meterRegistry);
+            this.failed = Counter.builder("ewm.outbox.messages").tag("topic", topic).tag("result", "failed")
+                    .register(meterRegistry);
+            this.deadLettered = Counter.builder("ewm.outbox.messages").tag("topic", topic).tag("result", "dead_lettered")
+                    .register(meterRegistry);
+        }
+    }
+}
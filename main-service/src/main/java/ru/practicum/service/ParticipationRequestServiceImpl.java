@@ -2,6 +2,7 @@ package ru.practicum.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.dto.ParticipationRequestDto;
@@ -35,6 +36,7 @@ public class ParticipationRequestServiceImpl implements ParticipationRequestServ
     private final UserRepository userRepository;
     private final EventRepository eventRepository;
     private final ParticipationRequestMapper requestMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional
@@ -76,6 +78,9 @@ public class ParticipationRequestServiceImpl implements ParticipationRequestServ
                 .build();
 
         ParticipationRequest savedRequest = requestRepository.save(request);
+        if (status == RequestStatus.CONFIRMED) {
+            publishAvailabilityChanged(event);
+        }
         return requestMapper.toParticipationRequestDto(savedRequest);
     }
 
@@ -100,8 +105,12 @@ public class ParticipationRequestServiceImpl implements ParticipationRequestServ
             throw new NotFoundException("Заявка с id=" + requestId + " не принадлежит пользователю с id=" + userId);
         }
 
+        boolean wasConfirmed = request.getStatus() == RequestStatus.CONFIRMED;
         request.setStatus(RequestStatus.CANCELED);
         ParticipationRequest updatedRequest = requestRepository.save(request);
+        if (wasConfirmed) {
+            publishAvailabilityChanged(request.getEvent());
+        }
 
         return requestMapper.toParticipationRequestDto(updatedRequest);
     }
@@ -178,6 +187,9 @@ public class ParticipationRequestServiceImpl implements ParticipationRequestServ
         }
 
         requestRepository.saveAll(requests);
+        if (!confirmed.isEmpty()) {
+            publishAvailabilityChanged(event);
+        }
 
         return EventRequestStatusUpdateResult.builder()
                 .confirmedRequests(confirmed)
@@ -185,6 +197,11 @@ public class ParticipationRequestServiceImpl implements ParticipationRequestServ
                 .build();
     }
 
+    // Число подтвержденных заявок видно в публичных списках и влияет на фильтр onlyAvailable
+    private void publishAvailabilityChanged(Event event) {
+        eventPublisher.publishEvent(EventListingChangedEvent.availability(event.getId(), event.getCategory().getId()));
+    }
+
     private User getUserById(Long userId) {
         return userRepository.findById(userId)
                 .orElseThrow(() -> new NotFoundException("Пользователь с id=" + userId + " не найден"));
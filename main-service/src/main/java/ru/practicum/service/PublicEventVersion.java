@@ -0,0 +1,8 @@
+package ru.practicum.service;
+
+/**
+ * Версия публичного события вместе со счетчиками, из которых она посчитана.
+ * Тело ответа собирается из этих же счетчиков, чтобы не считать их второй раз.
+ */
+public record PublicEventVersion(Long eventId, ResourceVersion version, long confirmedRequests, long views) {
+}
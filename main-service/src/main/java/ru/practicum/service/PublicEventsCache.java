@@ -0,0 +1,136 @@
+package ru.practicum.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.practicum.dto.EventShortDto;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Кэш результатов публичного поиска событий (GET /events).
+ * Ключ - нормализованный набор параметров, вытеснение W-TinyLFU с учетом размера списка.
+ * Записи сбрасываются по событию и категории после коммита изменений, TTL ограничивает устаревание просмотров.
+ * Загрузка, начатая до коммита, может закончиться уже после сброса; поэтому каждый сброс увеличивает эпоху,
+ * и загруженный список удаляется, если эпоха сменилась за время загрузки.
+ */
+@Slf4j
+@Component
+public class PublicEventsCache {
+
+    private final boolean enabled;
+    private final Cache<Key, Entry> cache;
+    private final AtomicLong invalidationEpoch = new AtomicLong();
+
+    public PublicEventsCache(@Value("${ewm.events.cache.enabled:true}") boolean enabled,
+                             @Value("${ewm.events.cache.max-weight:100000}") long maxWeight,
+                             @Value("${ewm.events.cache.ttl:PT30S}") Duration ttl,
+                             MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                // Вес записи - число событий в списке, пустой список тоже занимает место
+                .weigher((Key key, Entry entry) -> entry.events().size() + 1)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "public-events", "endpoint", "public-events");
+    }
+
+    public List<EventShortDto> get(Key key, Supplier<List<EventShortDto>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        long epoch = invalidationEpoch.get();
+        boolean[] loaded = {false};
+        Entry entry = cache.get(key, k -> {
+            loaded[0] = true;
+            List<EventShortDto> events = List.copyOf(loader.get());
+            Set<Long> eventIds = events.stream().map(EventShortDto::getId).collect(Collectors.toUnmodifiableSet());
+            return new Entry(events, eventIds);
+        });
+        // Сброс увеличивает эпоху до обхода записей: либо он увидит эту запись, либо здесь видна новая эпоха
+        if (loaded[0] && invalidationEpoch.get() != epoch) {
+            cache.asMap().remove(key, entry);
+        }
+        return entry.events();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onListingChanged(EventListingChangedEvent change) {
+        invalidate(change);
+    }
+
+    // Изменения, сделанные другими экземплярами сервиса
+    @EventListener
+    public void onRemoteInvalidation(RemoteInvalidation invalidation) {
+        if (invalidation.all()) {
+            invalidationEpoch.incrementAndGet();
+            cache.invalidateAll();
+        } else if (invalidation.listing() != null) {
+            invalidate(invalidation.listing());
+        }
+    }
+
+    private void invalidate(EventListingChangedEvent change) {
+        if (!enabled) {
+            return;
+        }
+        invalidationEpoch.incrementAndGet();
+        int before = cache.asMap().size();
+        cache.asMap().entrySet().removeIf(e -> isAffected(e.getKey(), e.getValue(), change));
+        log.debug("Сброс кэша списков событий: {}, удалено записей: {}", change, before - cache.asMap().size());
+    }
+
+    private boolean isAffected(Key key, Entry entry, EventListingChangedEvent change) {
+        if (change.eventId() != null && entry.eventIds().contains(change.eventId())) {
+            return true;
+        }
+        return switch (change.scope()) {
+            case CONTENT -> false;
+            case AVAILABILITY -> Boolean.TRUE.equals(key.onlyAvailable()) && key.matchesAny(change.categoryIds());
+            case MEMBERSHIP -> key.matchesAny(change.categoryIds());
+        };
+    }
+
+    /**
+     * Нормализованные параметры поиска: регистр текста, порядок и повторы категорий не влияют на ключ.
+     */
+    public record Key(String text, List<Long> categories, Boolean paid,
+                      LocalDateTime rangeStart, LocalDateTime rangeEnd,
+                      Boolean onlyAvailable, String sort, Integer from, Integer size) {
+
+        public static Key of(String text, List<Long> categories, Boolean paid,
+                             LocalDateTime rangeStart, LocalDateTime rangeEnd,
+                             Boolean onlyAvailable, String sort, Integer from, Integer size) {
+            String normalizedText = text == null || text.isBlank() ? null : text.toLowerCase(Locale.ROOT);
+            List<Long> normalizedCategories = categories == null || categories.isEmpty()
+                    ? null
+                    : categories.stream().distinct().sorted().toList();
+            return new Key(normalizedText, normalizedCategories, paid, rangeStart, rangeEnd,
+                    Boolean.TRUE.equals(onlyAvailable), sort, from, size);
+        }
+
+        // Поиск без фильтра по категориям затрагивается изменением в любой категории
+        boolean matchesAny(Set<Long> categoryIds) {
+            return categories == null || categoryIds.stream().anyMatch(categories::contains);
+        }
+    }
+
+    private record Entry(List<EventShortDto> events, Set<Long> eventIds) {
+    }
+}
@@ -0,0 +1,21 @@
+package ru.practicum.service;
+
+/**
+ * Уведомление о сбросе кэшей, пришедшее от другого экземпляра сервиса (или сформированное локально после
+ * переподключения к шине). Публикуется как событие Spring, каждый локальный кэш сбрасывает свое.
+ *
+ * @param origin  идентификатор экземпляра-отправителя
+ * @param all     уведомления могли быть потеряны: сбросить все целиком
+ * @param listing изменение публичных списков событий, может быть null
+ * @param entity  изменение кэшируемой сущности, может быть null
+ */
+public record RemoteInvalidation(String origin, boolean all, EventListingChangedEvent listing, EntityChangedEvent entity) {
+
+    public static RemoteInvalidation everything(String origin) {
+        return new RemoteInvalidation(origin, true, null, null);
+    }
+
+    public boolean affects(EntityChangedEvent.Type type) {
+        return all || (entity != null && entity.type() == type);
+    }
+}
@@ -0,0 +1,29 @@
+package ru.practicum.service;
+
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Версия публичного ресурса для условного GET.
+ * ETag слабый: это хэш от времени изменения и счетчиков, а не от байтов ответа.
+ * lastModified заполняется только там, где время изменения покрывает все содержимое ответа
+ * (без счетчиков просмотров и заявок и без удалений), иначе null.
+ */
+public record ResourceVersion(String etag, Instant lastModified) {
+
+    public static ResourceVersion of(LocalDateTime lastModified, Object... parts) {
+        String source = Arrays.stream(parts).map(String::valueOf).collect(Collectors.joining(":"));
+        String etag = "W/\"" + DigestUtils.md5DigestAsHex(source.getBytes(StandardCharsets.UTF_8)) + "\"";
+        return new ResourceVersion(etag, lastModified == null ? null : lastModified.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    public static ResourceVersion withoutLastModified(Object... parts) {
+        return of(null, parts);
+    }
+}
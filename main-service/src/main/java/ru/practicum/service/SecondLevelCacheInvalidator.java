@@ -0,0 +1,48 @@
+package ru.practicum.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.practicum.model.Category;
+import ru.practicum.model.Compilation;
+import ru.practicum.model.User;
+
+/**
+ * Сбрасывает записи кэша второго уровня Hibernate по изменениям, сделанным другими экземплярами.
+ * Свои изменения Hibernate отражает в кэше сам.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SecondLevelCacheInvalidator {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    @EventListener
+    public void onRemoteInvalidation(RemoteInvalidation invalidation) {
+        Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        if (invalidation.all()) {
+            cache.evictAllRegions();
+            log.info("Кэш второго уровня сброшен целиком");
+            return;
+        }
+        EntityChangedEvent entity = invalidation.entity();
+        if (entity == null) {
+            return;
+        }
+        switch (entity.type()) {
+            case CATEGORY -> cache.evictEntityData(Category.class, entity.id());
+            case USER -> cache.evictEntityData(User.class, entity.id());
+            case COMPILATION -> {
+                cache.evictEntityData(Compilation.class, entity.id());
+                cache.evictCollectionData(Compilation.class.getName() + ".events", entity.id());
+                // Метки изменения таблиц локальные: кэш запросов по подборкам сам об изменении не узнает
+                cache.evictDefaultQueryRegion();
+            }
+        }
+    }
+}
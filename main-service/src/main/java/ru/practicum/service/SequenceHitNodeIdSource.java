@@ -0,0 +1,27 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.practicum.service.client.HitNodeIdSource;
+
+/**
+ * Выделяет номер узла для идентификаторов хитов из последовательности в БД: экземпляры, запущенные
+ * друг за другом, получают разные номера. Последовательность циклична (0..1023), поэтому номер повторится
+ * только после 1024 запусков; если экземпляр живет дольше, задайте stats.client.node-id явно.
+ */
+@Component
+@RequiredArgsConstructor
+public class SequenceHitNodeIdSource implements HitNodeIdSource {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public long allocateNodeId() {
+        Long nodeId = jdbcTemplate.queryForObject("SELECT nextval('stats_hit_node_id_seq')", Long.class);
+        if (nodeId == null) {
+            throw new IllegalStateException("Не удалось выделить номер узла для идентификаторов хитов");
+        }
+        return nodeId;
+    }
+}
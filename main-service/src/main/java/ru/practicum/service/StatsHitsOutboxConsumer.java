@@ -0,0 +1,51 @@
+package ru.practicum.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import ru.practicum.model.OutboxMessage;
+import ru.practicum.service.client.StatsClient;
+import ru.practicum.service.dto.EndpointHit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Отправляет хиты из outbox в сервис статистики одной пачкой. Повторная отправка безопасна:
+ * сервер игнорирует хиты с уже известным идентификатором.
+ */
+@Component
+@RequiredArgsConstructor
+public class StatsHitsOutboxConsumer implements OutboxConsumer {
+
+    public static final String TOPIC = "stats-hits";
+
+    private final StatsClient statsClient;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public String topic() {
+        return TOPIC;
+    }
+
+    @Override
+    public void deliver(List<OutboxMessage> messages) throws Exception {
+        List<EndpointHit> hits = new ArrayList<>(messages.size());
+        for (OutboxMessage message : messages) {
+            hits.add(objectMapper.readValue(message.getPayload(), EndpointHit.class));
+        }
+        statsClient.sendHits(hits);
+    }
+
+    // 4xx означает, что сервер отверг хиты; 429 - только просьба подождать
+    @Override
+    public boolean isPermanentFailure(Exception e) {
+        if (e instanceof HttpClientErrorException clientError) {
+            return clientError.getStatusCode() != HttpStatus.TOO_MANY_REQUESTS;
+        }
+        return e instanceof JsonProcessingException;
+    }
+}
@@ -1,6 +1,7 @@
 package ru.practicum.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -12,6 +13,10 @@ import ru.practicum.exception.NotFoundException;
 import ru.practicum.exception.ValidationException;
 import ru.practicum.mapper.UserMapper;
 import ru.practicum.model.User;
+import ru.practicum.model.enums.CommentStatus;
+import ru.practicum.repository.CommentRepository;
+import ru.practicum.repository.EventCommentCount;
+import ru.practicum.repository.EventRepository;
 import ru.practicum.repository.UserRepository;
 import ru.practicum.service.UserService;
 import ru.practicum.validator.DateValidator;
@@ -25,8 +30,11 @@ import java.util.stream.Collectors;
 public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
+    private final CommentRepository commentRepository;
+    private final EventRepository eventRepository;
     private final UserMapper userMapper;
     private final DateValidator dateValidator;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional
@@ -64,6 +72,12 @@ public class UserServiceImpl implements UserService {
     public void deleteUser(Long userId) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new NotFoundException("Пользователь с id=" + userId + " не найден"));
+        // Комментарии пользователя удалит каскад в БД, счетчики событий уменьшаем заранее
+        for (EventCommentCount approved : commentRepository.countByAuthorIdAndStatusGroupByEvent(userId, CommentStatus.APPROVED)) {
+            eventRepository.addToCommentsCount(approved.getEventId(), -approved.getCount());
+            eventPublisher.publishEvent(EventListingChangedEvent.content(approved.getEventId()));
+        }
         userRepository.delete(user);
+        eventPublisher.publishEvent(new EntityChangedEvent(EntityChangedEvent.Type.USER, userId));
     }
 }
\ No newline at end of file
@@ -80,4 +80,63 @@ CREATE TABLE IF NOT EXISTS comments (
     CONSTRAINT pk_comment PRIMARY KEY (id),
     CONSTRAINT fk_comment_event FOREIGN KEY (event_id) REFERENCES events (id) ON DELETE CASCADE,
     CONSTRAINT fk_comment_user FOREIGN KEY (author_id) REFERENCES users (id) ON DELETE CASCADE
-);
\ No newline at end of file
+);
+
+-- Время последнего изменения для условных GET (ETag); существующие строки получают время миграции
+ALTER TABLE events ADD COLUMN IF NOT EXISTS updated_on TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT now();
+ALTER TABLE categories ADD COLUMN IF NOT EXISTS updated_on TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT now();
+ALTER TABLE compilations ADD COLUMN IF NOT EXISTS updated_on TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT now();
+
+-- Outbox: сообщения для внешних получателей (хиты для статистики, сброс кэшей), записанные вместе с изменением
+CREATE TABLE IF NOT EXISTS outbox (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    topic VARCHAR(50) NOT NULL,
+    payload TEXT NOT NULL,
+    created_on TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    CONSTRAINT pk_outbox PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_outbox_topic_next_attempt ON outbox (topic, next_attempt_at, id);
+
+-- Сообщения outbox, которые не удалось доставить за max-attempts попыток или которые отверг получатель
+CREATE TABLE IF NOT EXISTS outbox_dead_letter (
+    id BIGINT NOT NULL,
+    topic VARCHAR(50) NOT NULL,
+    payload TEXT NOT NULL,
+    created_on TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    attempts INTEGER NOT NULL,
+    failed_on TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    last_error VARCHAR(1000),
+    CONSTRAINT pk_outbox_dead_letter PRIMARY KEY (id)
+);
+
+-- Разовые миграции данных: строка с id отмечает, что миграция уже выполнена
+CREATE TABLE IF NOT EXISTS schema_migrations (
+    id VARCHAR(100) PRIMARY KEY,
+    applied_on TIMESTAMP WITHOUT TIME ZONE NOT NULL
+);
+
+-- Счетчик одобренных комментариев события
+ALTER TABLE events ADD COLUMN IF NOT EXISTS comments_count BIGINT NOT NULL DEFAULT 0;
+-- Заполнение счетчика по фактическим данным выполняется один раз: UPDATE срабатывает, только если
+-- отметка миграции вставлена этим запуском, поэтому перезапуски не затирают живые инкременты
+WITH mark AS (
+    INSERT INTO schema_migrations (id, applied_on) VALUES ('events-comments-count', now())
+    ON CONFLICT (id) DO NOTHING
+    RETURNING id
+)
+UPDATE events e SET comments_count = c.cnt
+FROM (SELECT event_id, COUNT(*) AS cnt FROM comments WHERE status = 'APPROVED' GROUP BY event_id) c
+WHERE e.id = c.event_id AND EXISTS (SELECT 1 FROM mark);
+
+-- Одобренные комментарии события в порядке публикации
+CREATE INDEX IF NOT EXISTS idx_comments_event_status_created ON comments (event_id, status, created_on);
+
+-- Административный поиск комментариев: по статусу или автору с сортировкой по времени создания
+CREATE INDEX IF NOT EXISTS idx_comments_status_created ON comments (status, created_on);
+CREATE INDEX IF NOT EXISTS idx_comments_author_created ON comments (author_id, created_on);
+
+-- Номера узлов для идентификаторов хитов (stats.client.node-id не задан): каждый запуск получает следующий
+CREATE SEQUENCE IF NOT EXISTS stats_hit_node_id_seq MINVALUE 0 MAXVALUE 1023 START WITH 0 CYCLE;
@@ -0,0 +1,240 @@
+package ru.practicum.service.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.service.dto.EndpointHit;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Ограниченный буфер хитов с фоновой отправкой.
+ * Вызывающий поток только кладет хит в очередь; отдельный поток отправляет пачку,
+ * когда набралось batchSize хитов или самый старый из них ждет дольше maxAge.
+ */
+@Slf4j
+public class HitBatcher implements AutoCloseable {
+    private final Consumer<List<EndpointHit>> sender;
+    private final StatsClientProperties.Batching settings;
+    private final HitSpool spool;
+
+    private final Deque<EndpointHit> buffer = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchReady = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Thread flusher;
+
+    private final Counter sent;
+    private final Counter dropped;
+    private final Counter failed;
+    private final Counter rejected;
+
+    private long oldestEnqueuedAt;
+    private boolean closed;
+
+    // spool может быть null: тогда неотправленные хиты теряются
+    public HitBatcher(Consumer<List<EndpointHit>> sender, StatsClientProperties.Batching settings, HitSpool spool,
+                      MeterRegistry meterRegistry) {
+        this.sender = sender;
+        this.settings = settings;
+        this.spool = spool;
+        this.sent = hitsCounter(meterRegistry, "sent");
+        this.dropped = hitsCounter(meterRegistry, "dropped");
+        this.failed = hitsCounter(meterRegistry, "failed");
+        this.rejected = hitsCounter(meterRegistry, "rejected");
+        Gauge.builder("stats.client.hits.queued", this, HitBatcher::size)
+                .description("Хиты в буфере, ожидающие отправки")
+                .register(meterRegistry);
+
+        this.flusher = new Thread(this::run, "stats-hit-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public void offer(EndpointHit hit) {
+        List<EndpointHit> spilled = null;
+        lock.lock();
+        try {
+            if (closed) {
+                dropped.increment();
+                return;
+            }
+            if (buffer.size() >= settings.getCapacity()) {
+                if (settings.getOverflowPolicy() == HitOverflowPolicy.SPILL && spool != null) {
+                    spilled = poll(settings.getBatchSize());
+                } else if (!makeRoom()) {
+                    dropped.increment();
+                    return;
+                }
+            }
+            if (buffer.isEmpty()) {
+                oldestEnqueuedAt = System.nanoTime();
+            }
+            buffer.addLast(hit);
+            if (buffer.size() >= settings.getBatchSize()) {
+                batchReady.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        // Запись на диск выполняется вне блокировки, чтобы не задерживать другие потоки
+        if (spilled != null) {
+            spool.append(spilled);
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return buffer.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Останавливает прием хитов и отправляет оставшиеся, ожидая не дольше drainTimeout
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            batchReady.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join(settings.getDrainTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<EndpointHit> left;
+        lock.lock();
+        try {
+            left = poll(buffer.size());
+        } finally {
+            lock.unlock();
+        }
+        if (left.isEmpty()) {
+            return;
+        }
+        if (spool != null) {
+            log.info("При остановке в локальную очередь сохранено хитов: {}", left.size());
+            spool.append(left);
+        } else {
+            dropped.increment(left.size());
+            log.warn("При остановке не отправлено хитов: {}", left.size());
+        }
+    }
+
+    // Вызывается под блокировкой при заполненном буфере
+    private boolean makeRoom() {
+        if (settings.getOverflowPolicy() != HitOverflowPolicy.BLOCK) {
+            buffer.pollFirst();
+            dropped.increment();
+            return true;
+        }
+        long remaining = settings.getBlockTimeout().toNanos();
+        try {
+            while (buffer.size() >= settings.getCapacity() && !closed) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = notFull.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return !closed;
+    }
+
+    private void run() {
+        while (true) {
+            List<EndpointHit> batch = takeBatch();
+            if (batch == null) {
+                return;
+            }
+            send(batch);
+        }
+    }
+
+    // Ждет, пока наберется пачка или истечет maxAge; null - буфер закрыт и пуст
+    private List<EndpointHit> takeBatch() {
+        lock.lock();
+        try {
+            while (!closed) {
+                if (buffer.size() >= settings.getBatchSize()) {
+                    break;
+                }
+                long waitNanos = buffer.isEmpty()
+                        ? settings.getMaxAge().toNanos()
+                        : settings.getMaxAge().toNanos() - (System.nanoTime() - oldestEnqueuedAt);
+                if (!buffer.isEmpty() && waitNanos <= 0) {
+                    break;
+                }
+                batchReady.awaitNanos(waitNanos);
+            }
+            if (buffer.isEmpty()) {
+                return closed ? null : List.of();
+            }
+
+            return poll(settings.getBatchSize());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Вызывается под блокировкой
+    private List<EndpointHit> poll(int limit) {
+        int count = Math.min(buffer.size(), limit);
+        List<EndpointHit> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            batch.add(buffer.pollFirst());
+        }
+        // Время ожидания оставшихся хитов отсчитывается заново: точное время каждого не храним
+        oldestEnqueuedAt = System.nanoTime();
+        notFull.signalAll();
+        return batch;
+    }
+
+    private void send(List<EndpointHit> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            sender.accept(batch);
+            sent.increment(batch.size());
+        } catch (Exception e) {
+            if (StatsCallGuard.isRejectedByServer(e)) {
+                // Отвергнутую пачку не сохраняем: при повторе из очереди она заблокировала бы остальные сегменты
+                rejected.increment(batch.size());
+                log.error("Сервер статистики отверг пачку из {} хитов, пачка отброшена: {}", batch.size(), e.getMessage());
+                return;
+            }
+            failed.increment(batch.size());
+            log.warn("Не удалось отправить пачку из {} хитов: {}", batch.size(), e.getMessage());
+            if (spool != null) {
+                spool.append(batch);
+            }
+        }
+    }
+
+    private static Counter hitsCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("stats.client.hits")
+                .description("Хиты, прошедшие через буфер клиента статистики")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,52 @@
+package ru.practicum.service.client;
+
+/**
+ * Генератор 64-битных идентификаторов хитов, упорядоченных по времени (схема snowflake):
+ * 41 бит миллисекунд от собственной эпохи, 10 бит номера узла и 12 бит счетчика внутри миллисекунды.
+ * Идентификатор назначается один раз при создании хита, поэтому повторная отправка не приводит к двойному учету.
+ */
+public class HitIdGenerator {
+    private static final long EPOCH = 1704067200000L; // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    public static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeId;
+    private long lastTimestamp = -1L;
+    private long sequence = 0L;
+
+    public HitIdGenerator(long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Номер узла должен быть в диапазоне 0.." + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+    }
+
+    public synchronized long nextId() {
+        long timestamp = System.currentTimeMillis();
+        // При переводе часов назад продолжаем от последней выданной миллисекунды
+        if (timestamp < lastTimestamp) {
+            timestamp = lastTimestamp;
+        }
+        if (timestamp == lastTimestamp) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                timestamp = waitNextMillis(lastTimestamp);
+            }
+        } else {
+            sequence = 0L;
+        }
+        lastTimestamp = timestamp;
+        return ((timestamp - EPOCH) << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+    private long waitNextMillis(long lastTimestamp) {
+        long timestamp = System.currentTimeMillis();
+        while (timestamp <= lastTimestamp) {
+            Thread.onSpinWait();
+            timestamp = System.currentTimeMillis();
+        }
+        return timestamp;
+    }
+}
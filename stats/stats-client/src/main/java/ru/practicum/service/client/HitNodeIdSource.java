@@ -0,0 +1,11 @@
+package ru.practicum.service.client;
+
+/**
+ * Источник номера узла для {@link HitIdGenerator}, когда stats.client.node-id не задан явно.
+ * Номер должен быть уникален среди одновременно работающих экземпляров: совпадение номеров
+ * приводит к одинаковым идентификаторам, и сервер статистики молча отбросит настоящие хиты как повторы.
+ */
+@FunctionalInterface
+public interface HitNodeIdSource {
+    long allocateNodeId();
+}
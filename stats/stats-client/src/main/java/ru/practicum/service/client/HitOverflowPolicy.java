@@ -0,0 +1,13 @@
+package ru.practicum.service.client;
+
+/**
+ * Поведение буфера хитов при переполнении.
+ */
+public enum HitOverflowPolicy {
+    // Вытеснить самый старый хит из буфера
+    DROP_OLDEST,
+    // Подождать освобождения места не дольше blockTimeout, затем отбросить новый хит
+    BLOCK,
+    // Переложить самые старые хиты в локальную очередь на диске (stats.client.spool)
+    SPILL
+}
@@ -0,0 +1,293 @@
+package ru.practicum.service.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.service.dto.EndpointHit;
+import ru.practicum.service.dto.StatsBinaryCodec;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Локальная очередь хитов на диске на время недоступности сервиса статистики.
+ * Пачки дописываются в конец текущего сегмента в двоичном формате {@link StatsBinaryCodec},
+ * каждая запись - длина, CRC32 и содержимое. Сегмент закрывается по достижении segmentSize.
+ * Фоновая задача отправляет закрытые сегменты по порядку и удаляет успешно отправленные;
+ * повторная отправка сегмента после сбоя безопасна, так как хиты несут идентификаторы.
+ * Пачка, которую сервер отверг (4xx), отбрасывается, чтобы не блокировать отправку следующих сегментов.
+ * При превышении бюджета диска удаляются самые старые сегменты.
+ */
+@Slf4j
+public class HitSpool implements AutoCloseable {
+    private static final String PREFIX = "hits-";
+    private static final String SUFFIX = ".spool";
+    private static final int RECORD_HEADER = Integer.BYTES * 2;
+
+    private final StatsClientProperties.Spool settings;
+    private final Consumer<List<EndpointHit>> sender;
+    private final Path directory;
+    private final ScheduledExecutorService replayer;
+
+    private final Counter spooled;
+    private final Counter replayed;
+    private final Counter dropped;
+    private final Counter rejected;
+
+    private FileChannel current;
+    private long currentSequence;
+    private long currentSize;
+
+    public HitSpool(StatsClientProperties.Spool settings, Consumer<List<EndpointHit>> sender,
+                    MeterRegistry meterRegistry) {
+        this.settings = settings;
+        this.sender = sender;
+        this.directory = Path.of(settings.getDirectory());
+        this.spooled = spoolCounter(meterRegistry, "spooled");
+        this.replayed = spoolCounter(meterRegistry, "replayed");
+        this.dropped = spoolCounter(meterRegistry, "dropped");
+        this.rejected = spoolCounter(meterRegistry, "rejected");
+        Gauge.builder("stats.client.spool.bytes", this, HitSpool::diskUsage)
+                .description("Размер локальной очереди хитов на диске")
+                .register(meterRegistry);
+
+        try {
+            Files.createDirectories(directory);
+            List<Path> segments = segments();
+            // Нумерация продолжается после сегментов, оставшихся с прошлого запуска
+            currentSequence = segments.isEmpty() ? 0 : sequenceOf(segments.get(segments.size() - 1)) + 1;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть каталог очереди хитов " + directory, e);
+        }
+
+        this.replayer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stats-hit-spool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = settings.getReplayInterval().toMillis();
+        replayer.scheduleWithFixedDelay(this::replay, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void append(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        try {
+            ByteBuffer record = encode(hits);
+            if (!reserve(record.remaining())) {
+                dropped.increment(hits.size());
+                log.warn("Бюджет диска очереди хитов исчерпан, отброшено хитов: {}", hits.size());
+                return;
+            }
+            if (current == null) {
+                openSegment();
+            }
+            while (record.hasRemaining()) {
+                currentSize += current.write(record);
+            }
+            if (settings.isFsync()) {
+                current.force(false);
+            }
+            spooled.increment(hits.size());
+            if (currentSize >= settings.getSegmentSize().toBytes()) {
+                sealSegment();
+            }
+        } catch (IOException e) {
+            dropped.increment(hits.size());
+            log.error("Не удалось записать хиты в локальную очередь: {}", e.getMessage());
+        }
+    }
+
+    // Отправляет сегменты от старых к новым и останавливается на первой временной ошибке,
+    // чтобы не нарушать порядок и не нагружать недоступный сервер
+    public void replay() {
+        try {
+            synchronized (this) {
+                if (currentSize > 0) {
+                    sealSegment();
+                }
+            }
+            for (Path segment : sealedSegments()) {
+                for (List<EndpointHit> batch : read(segment)) {
+                    try {
+                        sender.accept(batch);
+                        replayed.increment(batch.size());
+                    } catch (RuntimeException e) {
+                        if (!StatsCallGuard.isRejectedByServer(e)) {
+                            throw e;
+                        }
+                        rejected.increment(batch.size());
+                        log.error("Сервер статистики отверг пачку из {} хитов сегмента {}, пачка отброшена: {}",
+                                batch.size(), segment.getFileName(), e.getMessage());
+                    }
+                }
+                Files.deleteIfExists(segment);
+                log.info("Сегмент очереди хитов {} отправлен", segment.getFileName());
+            }
+        } catch (Exception e) {
+            log.debug("Отправка очереди хитов отложена: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        replayer.shutdownNow();
+        try {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        } catch (IOException e) {
+            log.warn("Не удалось закрыть сегмент очереди хитов: {}", e.getMessage());
+        }
+    }
+
+    private ByteBuffer encode(List<EndpointHit> hits) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        StatsBinaryCodec.writeHits(hits, payload);
+        byte[] bytes = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + bytes.length);
+        record.putInt(bytes.length);
+        record.putInt((int) crc.getValue());
+        record.put(bytes);
+        return record.flip();
+    }
+
+    // Недописанная или поврежденная запись в конце сегмента (сбой при записи) пропускается
+    private List<List<EndpointHit>> read(Path segment) throws IOException {
+        List<List<EndpointHit>> batches = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ);
+             InputStream stream = Channels.newInputStream(channel);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            while (true) {
+                int length;
+                int checksum;
+                byte[] bytes;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    if (length < 0 || length > channel.size()) {
+                        break;
+                    }
+                    bytes = in.readNBytes(length);
+                } catch (EOFException e) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(bytes);
+                if (bytes.length != length || (int) crc.getValue() != checksum) {
+                    log.warn("Поврежденная запись в сегменте {} пропущена", segment.getFileName());
+                    break;
+                }
+                batches.add(StatsBinaryCodec.readHits(new ByteArrayInputStream(bytes)));
+            }
+        }
+        return batches;
+    }
+
+    // Освобождает место под запись, удаляя самые старые закрытые сегменты
+    private boolean reserve(long bytes) throws IOException {
+        long budget = settings.getMaxDiskSize().toBytes();
+        List<Path> sealed = sealedSegments();
+        long usage = diskUsage();
+        for (Path segment : sealed) {
+            if (usage + bytes <= budget) {
+                break;
+            }
+            long size = Files.size(segment);
+            long hits = read(segment).stream().mapToLong(List::size).sum();
+            Files.deleteIfExists(segment);
+            usage -= size;
+            dropped.increment(hits);
+            log.warn("Бюджет диска очереди хитов исчерпан, удален сегмент {}", segment.getFileName());
+        }
+        return usage + bytes <= budget;
+    }
+
+    private void openSegment() throws IOException {
+        current = FileChannel.open(segmentPath(currentSequence),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        currentSize = current.size();
+    }
+
+    private void sealSegment() throws IOException {
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+        currentSequence++;
+        currentSize = 0;
+    }
+
+    private synchronized List<Path> sealedSegments() throws IOException {
+        List<Path> segments = segments();
+        if (current != null) {
+            Path open = segmentPath(currentSequence);
+            segments.removeIf(open::equals);
+        }
+        return segments;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return new ArrayList<>(files
+                    .filter(path -> path.getFileName().toString().startsWith(PREFIX)
+                            && path.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .toList());
+        }
+    }
+
+    private long diskUsage() {
+        try {
+            long total = 0;
+            for (Path segment : segments()) {
+                total += Files.size(segment);
+            }
+            return total;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private Path segmentPath(long sequence) {
+        return directory.resolve(String.format("%s%020d%s", PREFIX, sequence, SUFFIX));
+    }
+
+    private static long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static Counter spoolCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("stats.client.spool.hits")
+                .description("Хиты, прошедшие через локальную очередь на диске")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,55 @@
+package ru.practicum.service.client;
+
+import ru.practicum.service.dto.ViewStats;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Последние полученные от сервера значения просмотров по (uri, unique) за окно getViews
+ * (с stats.client.cache.views-since по момент загрузки). Диапазон в ключ не входит, поэтому
+ * сюда попадают только загрузки за это окно, а не ответы getStats за произвольный период.
+ * Используются как ответ, когда сервис статистики недоступен: устаревшее число лучше нуля.
+ */
+public class LastKnownViews {
+    private final Map<String, ViewStats> views;
+
+    public LastKnownViews(int maxSize) {
+        this.views = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ViewStats> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public synchronized void remember(List<ViewStats> stats, boolean unique) {
+        stats.forEach(viewStats -> views.put(key(viewStats.getUri(), unique), viewStats));
+    }
+
+    // Для запроса без списка uri возвращаются все известные значения
+    public synchronized List<ViewStats> lookup(List<String> uris, boolean unique) {
+        List<ViewStats> result = new ArrayList<>();
+        if (uris == null || uris.isEmpty()) {
+            views.forEach((key, viewStats) -> {
+                if (key.startsWith(unique + ":")) {
+                    result.add(viewStats);
+                }
+            });
+            return result;
+        }
+        for (String uri : uris) {
+            ViewStats viewStats = views.get(key(uri, unique));
+            if (viewStats != null) {
+                result.add(viewStats);
+            }
+        }
+        return result;
+    }
+
+    private static String key(String uri, boolean unique) {
+        return unique + ":" + uri;
+    }
+}
@@ -0,0 +1,195 @@
+package ru.practicum.service.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import ru.practicum.service.dto.EndpointHit;
+import ru.practicum.service.dto.StatsQuery;
+import ru.practicum.service.dto.ViewStats;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Неблокирующий вариант клиента статистики на WebClient.
+ * Вызовы идут под той же защитой, что и у {@link StatsClient} (ограничение одновременных вызовов
+ * и размыкание цепи), с ограничением времени ответа; длинные списки uri запрашиваются частями параллельно.
+ * Общие с блокирующим клиентом буфер хитов, локальная очередь и кэш просмотров используются как есть:
+ * поток event loop занимают только отправка в буфер при политике BLOCK и запись в очередь на диске,
+ * поэтому они уходят на boundedElastic.
+ * Запросы отправляются в JSON: двоичный формат для WebClient не подключен.
+ */
+@Slf4j
+public class ReactiveStatsClient {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final StatsClient statsClient;
+    private final WebClient webClient;
+    private final StatsCallGuard guard;
+    private final Duration readTimeout;
+    private final int chunkSize;
+    private final int maxParallelism;
+
+    public ReactiveStatsClient(StatsClient statsClient, WebClient webClient, StatsClientProperties properties) {
+        this.statsClient = statsClient;
+        this.webClient = webClient;
+        this.guard = statsClient.callGuard();
+        this.readTimeout = properties.getTransport().getReadTimeout();
+        this.chunkSize = properties.getQuery().getChunkSize();
+        this.maxParallelism = properties.getQuery().getMaxParallelism();
+    }
+
+    // Ошибки отправки не доходят до вызывающего, как и у StatsClient.saveHit
+    public Mono<Void> saveHit(String app, String uri, String ip) {
+        return Mono.defer(() -> {
+            EndpointHit hit = statsClient.createHit(app, uri, ip);
+            if (statsClient.hasBatcher()) {
+                return Mono.fromRunnable(() -> statsClient.offerToBatcher(hit))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .then();
+            }
+            return webClient.post()
+                    .uri("/hit")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(hit)
+                    .retrieve()
+                    .toBodilessEntity()
+                    .transformDeferred(guarded())
+                    .then()
+                    .onErrorResume(e -> {
+                        log.warn("Не удалось отправить хит: {}", e.getMessage());
+                        if (isRejectedByServer(e)) {
+                            return Mono.empty();
+                        }
+                        return Mono.fromRunnable(() -> statsClient.spool(List.of(hit)))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .then();
+                    });
+        });
+    }
+
+    // Как и StatsClient.getStats: при недоступном сервере ответ пустой
+    public Flux<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
+        Mono<List<ViewStats>> stats;
+        if (uris == null || uris.size() <= chunkSize) {
+            stats = fetchChunk(start, end, uris, unique);
+        } else {
+            List<String> distinct = List.copyOf(new LinkedHashSet<>(uris));
+            List<List<String>> chunks = new ArrayList<>();
+            for (int from = 0; from < distinct.size(); from += chunkSize) {
+                chunks.add(distinct.subList(from, Math.min(from + chunkSize, distinct.size())));
+            }
+            // Части не пересекаются по uri, поэтому результаты просто объединяются и сортируются заново
+            stats = Flux.fromIterable(chunks)
+                    .flatMap(chunk -> fetchChunk(start, end, chunk, unique), maxParallelism)
+                    .flatMapIterable(chunk -> chunk)
+                    .sort(Comparator.comparing(ViewStats::getHits).reversed())
+                    .collectList();
+        }
+        return stats
+                .onErrorResume(e -> {
+                    log.warn("Статистика недоступна: {}", e.getMessage());
+                    return Mono.just(List.of());
+                })
+                .flatMapIterable(result -> result);
+    }
+
+    public Flux<ViewStats> query(StatsQuery query) {
+        return webClient.post()
+                .uri("/stats/query")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue(query)
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<List<ViewStats>>() {})
+                .defaultIfEmpty(List.of())
+                .transformDeferred(guarded())
+                .flatMapIterable(stats -> stats);
+    }
+
+    // Строки обрабатываются по мере прихода, без накопления всего ответа в памяти
+    public Flux<ViewStats> streamStats(StatsQuery query) {
+        return Flux.using(guard::tryAcquire,
+                permit -> webClient.post()
+                        .uri("/stats/query")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .bodyValue(query)
+                        .retrieve()
+                        .bodyToFlux(ViewStats.class)
+                        .timeout(readTimeout)
+                        .doOnComplete(permit::succeeded)
+                        .doOnError(e -> complete(permit, e)),
+                StatsCallGuard.Permit::release);
+    }
+
+    // Кэш отдает CompletableFuture и загружает значения на своих потоках, вызывающий не блокируется
+    public Mono<Map<String, Long>> getViews(List<String> uris, boolean unique) {
+        return Mono.fromFuture(() -> statsClient.getViewsAsync(uris, unique));
+    }
+
+    private Mono<List<ViewStats>> fetchChunk(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
+        Map<String, String> params = new HashMap<>();
+        params.put("start", start.format(FORMATTER));
+        params.put("end", end.format(FORMATTER));
+
+        StringBuilder url = new StringBuilder("/stats?start={start}&end={end}");
+        if (uris != null && !uris.isEmpty()) {
+            url.append("&uris={uris}");
+            params.put("uris", String.join(",", uris));
+        }
+        if (unique != null) {
+            url.append("&unique={unique}");
+            params.put("unique", unique.toString());
+        }
+
+        return webClient.get()
+                .uri(url.toString(), params)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<List<ViewStats>>() {})
+                .defaultIfEmpty(List.of())
+                .transformDeferred(guarded());
+    }
+
+    // Разрешение берется при подписке, а не при сборке цепочки; ожидание места в ограничителе
+    // не блокирует поток, а отказ приходит как StatsUnavailableException
+    private <T> Function<Mono<T>, Mono<T>> guarded() {
+        return call -> Mono.using(guard::tryAcquire,
+                permit -> call
+                        .timeout(readTimeout)
+                        .doOnSuccess(result -> permit.succeeded())
+                        .doOnError(e -> complete(permit, e)),
+                StatsCallGuard.Permit::release);
+    }
+
+    // Ошибка запроса (4xx) не говорит о проблемах сервера
+    private static void complete(StatsCallGuard.Permit permit, Throwable e) {
+        if (e instanceof WebClientResponseException response && response.getStatusCode().is4xxClientError()) {
+            permit.succeeded();
+        } else {
+            permit.failed();
+        }
+    }
+
+    // Сервер отверг сам запрос (4xx, кроме 429): повтор тех же данных ничего не изменит
+    private static boolean isRejectedByServer(Throwable e) {
+        return e instanceof WebClientResponseException response
+                && response.getStatusCode().is4xxClientError()
+                && response.getStatusCode() != HttpStatus.TOO_MANY_REQUESTS;
+    }
+}
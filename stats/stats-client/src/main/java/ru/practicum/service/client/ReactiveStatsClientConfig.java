@@ -0,0 +1,40 @@
+package ru.practicum.service.client;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+// Активируется, только если приложение подключило spring-boot-starter-webflux
+@Configuration
+@ConditionalOnClass(name = "org.springframework.web.reactive.function.client.WebClient")
+public class ReactiveStatsClientConfig {
+
+    @Value("${STATS_SERVER_URL:http://localhost:9090}")
+    private String serverUrl;
+
+    @Bean
+    public ReactiveStatsClient reactiveStatsClient(StatsClient statsClient, StatsClientProperties properties) {
+        StatsClientProperties.Transport transport = properties.getTransport();
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("stats-client")
+                .maxConnections(transport.getMaxConnectionsPerRoute())
+                .pendingAcquireTimeout(transport.getConnectionRequestTimeout())
+                .maxIdleTime(transport.getIdleEviction())
+                .maxLifeTime(transport.getConnectionTimeToLive())
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) transport.getConnectTimeout().toMillis())
+                .responseTimeout(transport.getReadTimeout());
+
+        WebClient webClient = WebClient.builder()
+                .baseUrl(serverUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+        return new ReactiveStatsClient(statsClient, webClient, properties);
+    }
+}
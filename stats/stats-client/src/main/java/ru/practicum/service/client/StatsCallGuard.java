@@ -0,0 +1,135 @@
+package ru.practicum.service.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Защита вызовов сервиса статистики: ограничение одновременных вызовов и размыкание цепи.
+ * Отклоненный вызов не ждет таймаута, а сразу завершается {@link StatsUnavailableException}.
+ */
+public class StatsCallGuard {
+    private final StatsCircuitBreaker circuitBreaker;
+    private final Semaphore bulkhead;
+    private final Duration maxWait;
+    private final Counter rejectedByCircuit;
+    private final Counter rejectedByBulkhead;
+
+    public StatsCallGuard(StatsClientProperties.Resilience settings, MeterRegistry meterRegistry) {
+        this.circuitBreaker = new StatsCircuitBreaker(settings, meterRegistry);
+        this.bulkhead = new Semaphore(settings.getMaxConcurrentCalls());
+        this.maxWait = settings.getMaxWait();
+        this.rejectedByCircuit = rejectedCounter(meterRegistry, "circuit_open");
+        this.rejectedByBulkhead = rejectedCounter(meterRegistry, "bulkhead_full");
+    }
+
+    public <T> T call(Supplier<T> action) {
+        Permit permit = acquire();
+        try {
+            T result = action.get();
+            permit.succeeded();
+            return result;
+        } catch (HttpClientErrorException e) {
+            // Ошибка запроса (4xx) не говорит о проблемах сервера
+            permit.succeeded();
+            throw e;
+        } catch (RuntimeException e) {
+            permit.failed();
+            throw e;
+        } finally {
+            permit.release();
+        }
+    }
+
+    /**
+     * Разрешение на вызов для случаев, когда вызов не укладывается в {@link #call}, например для потока ответа.
+     * Вызывающий сообщает исход через succeeded/failed и обязательно вызывает release.
+     */
+    public Permit acquire() {
+        return acquire(maxWait);
+    }
+
+    // Без ожидания места в ограничителе: для потоков event loop, которые блокировать нельзя
+    public Permit tryAcquire() {
+        return acquire(Duration.ZERO);
+    }
+
+    private Permit acquire(Duration wait) {
+        if (!acquireBulkhead(wait)) {
+            rejectedByBulkhead.increment();
+            throw new StatsUnavailableException("Превышено число одновременных вызовов сервиса статистики");
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            bulkhead.release();
+            rejectedByCircuit.increment();
+            throw new StatsUnavailableException("Цепь вызовов сервиса статистики разомкнута");
+        }
+        return new Permit(System.nanoTime());
+    }
+
+    // Сервер отверг сам запрос (4xx, кроме 429): повтор тех же данных ничего не изменит
+    public static boolean isRejectedByServer(Exception e) {
+        return e instanceof HttpClientErrorException clientError
+                && clientError.getStatusCode() != HttpStatus.TOO_MANY_REQUESTS;
+    }
+
+    public void run(Runnable action) {
+        call(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public final class Permit {
+        private final long startedAt;
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        public void succeeded() {
+            if (completed.compareAndSet(false, true)) {
+                circuitBreaker.onSuccess(Duration.ofNanos(System.nanoTime() - startedAt));
+            }
+        }
+
+        public void failed() {
+            if (completed.compareAndSet(false, true)) {
+                circuitBreaker.onError();
+            }
+        }
+
+        // Вызов без исхода (например, отмененный подписчиком) не считается ошибкой сервера
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                succeeded();
+                bulkhead.release();
+            }
+        }
+    }
+
+    private boolean acquireBulkhead(Duration wait) {
+        try {
+            return bulkhead.tryAcquire(wait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("stats.client.calls.rejected")
+                .description("Вызовы сервиса статистики, отклоненные без обращения к серверу")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,140 @@
+package ru.practicum.service.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+
+/**
+ * Автомат размыкания цепи для вызовов сервиса статистики.
+ * В замкнутом состоянии считает долю ошибок и медленных вызовов в окне последних вызовов;
+ * при превышении порога размыкается и сразу отклоняет вызовы, через openDuration пропускает
+ * несколько пробных вызовов и по их итогу замыкается или снова размыкается.
+ */
+@Slf4j
+public class StatsCircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final StatsClientProperties.Resilience settings;
+    private final MeterRegistry meterRegistry;
+
+    // Кольцевое окно исходов последних вызовов
+    private final boolean[] failures;
+    private final boolean[] slowCalls;
+    private int position;
+    private int recorded;
+    private int failureCount;
+    private int slowCount;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSucceeded;
+
+    public StatsCircuitBreaker(StatsClientProperties.Resilience settings, MeterRegistry meterRegistry) {
+        this.settings = settings;
+        this.meterRegistry = meterRegistry;
+        this.failures = new boolean[settings.getSlidingWindowSize()];
+        this.slowCalls = new boolean[settings.getSlidingWindowSize()];
+        Gauge.builder("stats.client.circuit.state", this, breaker -> breaker.getState().ordinal())
+                .description("Состояние цепи вызовов сервиса статистики: 0 - замкнута, 1 - разомкнута, 2 - проба")
+                .register(meterRegistry);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < settings.getOpenDuration().toNanos()) {
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+            halfOpenPermits = settings.getHalfOpenCalls();
+            halfOpenSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits == 0) {
+                return false;
+            }
+            halfOpenPermits--;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess(Duration duration) {
+        boolean slow = duration.compareTo(settings.getSlowCallDuration()) > 0;
+        if (state == State.HALF_OPEN) {
+            // Медленный пробный вызов означает, что сервер еще не восстановился
+            if (slow) {
+                open();
+            } else if (++halfOpenSucceeded >= settings.getHalfOpenCalls()) {
+                resetWindow();
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        record(false, slow);
+    }
+
+    public synchronized void onError() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true, false);
+    }
+
+    private void record(boolean failure, boolean slow) {
+        if (state != State.CLOSED) {
+            return;
+        }
+        if (recorded == failures.length) {
+            failureCount -= failures[position] ? 1 : 0;
+            slowCount -= slowCalls[position] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        failures[position] = failure;
+        slowCalls[position] = slow;
+        failureCount += failure ? 1 : 0;
+        slowCount += slow ? 1 : 0;
+        position = (position + 1) % failures.length;
+
+        if (recorded < settings.getMinimumCalls()) {
+            return;
+        }
+        if (failureCount * 100 >= settings.getFailureRateThreshold() * recorded
+                || slowCount * 100 >= settings.getSlowCallRateThreshold() * recorded) {
+            open();
+        }
+    }
+
+    private void open() {
+        openedAt = System.nanoTime();
+        transitionTo(State.OPEN);
+    }
+
+    private void resetWindow() {
+        position = 0;
+        recorded = 0;
+        failureCount = 0;
+        slowCount = 0;
+    }
+
+    private void transitionTo(State next) {
+        if (state == next) {
+            return;
+        }
+        log.warn("Цепь вызовов сервиса статистики: {} -> {}", state, next);
+        Counter.builder("stats.client.circuit.transitions")
+                .tag("from", state.name())
+                .tag("to", next.name())
+                .register(meterRegistry)
+                .increment();
+        state = next;
+    }
+}
@@ -1,81 +1,314 @@
 package ru.practicum.service.client;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 import ru.practicum.service.dto.EndpointHit;
+import ru.practicum.service.dto.StatsBinaryHttpMessageConverter;
+import ru.practicum.service.dto.StatsQuery;
+import ru.practicum.service.dto.TrendingStats;
 import ru.practicum.service.dto.ViewStats;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import lombok.extern.slf4j.Slf4j;
+
 @Slf4j
-public class StatsClient {
+public class StatsClient implements AutoCloseable {
     private final String serverUrl;
     private final RestTemplate restTemplate;
+    private final HitIdGenerator hitIdGenerator;
+    private final boolean binaryFormat;
+    private final HitBatcher hitBatcher;
+    private final HitSpool hitSpool;
+    private final StatsCallGuard callGuard;
+    private final LastKnownViews lastKnownViews;
+    private final ViewStatsCache viewStatsCache;
+    private final Duration viewsWaitTimeout;
+    private final int chunkSize;
+    private final ExecutorService chunkExecutor;
+    private volatile List<TrendingStats> lastKnownTrending = List.of();
 
-    public StatsClient(String serverUrl) {
+    public StatsClient(String serverUrl, StatsClientProperties properties, ClientHttpRequestFactory requestFactory,
+                       HitIdGenerator hitIdGenerator, MeterRegistry meterRegistry) {
         this.serverUrl = serverUrl;
-        this.restTemplate = new RestTemplate();
+        this.restTemplate = new RestTemplate(requestFactory);
+        this.restTemplate.getMessageConverters().add(new StatsBinaryHttpMessageConverter());
+        this.hitIdGenerator = hitIdGenerator;
+        this.binaryFormat = properties.isBinaryFormat();
+        this.callGuard = new StatsCallGuard(properties.getResilience(), meterRegistry);
+        this.lastKnownViews = new LastKnownViews(properties.getResilience().getLastKnownSize());
+        LocalDateTime viewsSince = properties.getCache().getViewsSince();
+        this.viewStatsCache = new ViewStatsCache(properties.getCache(),
+                (uris, unique) -> fetchViews(viewsSince, uris, unique), meterRegistry);
+        this.viewsWaitTimeout = properties.getCache().getWaitTimeout();
+        this.chunkSize = properties.getQuery().getChunkSize();
+        this.chunkExecutor = Executors.newFixedThreadPool(properties.getQuery().getMaxParallelism(), runnable -> {
+            Thread thread = new Thread(runnable, "stats-query-chunk");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.hitSpool = properties.getSpool().isEnabled()
+                ? new HitSpool(properties.getSpool(), this::sendHits, meterRegistry)
+                : null;
+        this.hitBatcher = properties.getBatching().isEnabled()
+                ? new HitBatcher(this::sendHits, properties.getBatching(), hitSpool, meterRegistry)
+                : null;
     }
 
+    // Хит получает идентификатор сразу, поэтому повторная отправка пачки не приводит к двойному учету
     public void saveHit(String app, String uri, String ip) {
-        try {
-            EndpointHit endpointHit = EndpointHit.builder()
-                    .app(app)
-                    .uri(uri)
-                    .ip(ip)
-                    .timestamp(LocalDateTime.now())
-                    .build();
+        EndpointHit endpointHit = createHit(app, uri, ip);
 
+        if (hitBatcher != null) {
+            hitBatcher.offer(endpointHit);
+            return;
+        }
+
+        try {
             HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.setContentType(contentType());
             HttpEntity<EndpointHit> requestEntity = new HttpEntity<>(endpointHit, headers);
 
-            restTemplate.exchange(serverUrl + "/hit", HttpMethod.POST, requestEntity, Object.class);
+            callGuard.run(() -> restTemplate.exchange(serverUrl + "/hit", HttpMethod.POST, requestEntity, Object.class));
 
         } catch (Exception e) {
-            System.err.println("Error saving hit: " + e.getMessage());
+            log.warn("Не удалось отправить хит: {}", e.getMessage());
+            if (hitSpool != null && !StatsCallGuard.isRejectedByServer(e)) {
+                hitSpool.append(List.of(endpointHit));
+            }
         }
     }
 
+    // Хит с идентификатором для отправки позже, например через outbox вызывающего сервиса
+    public EndpointHit createHit(String app, String uri, String ip) {
+        return EndpointHit.builder()
+                .id(hitIdGenerator.nextId())
+                .app(app)
+                .uri(uri)
+                .ip(ip)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+
+    // Синхронная отправка пачки; в отличие от saveHit ошибки пробрасываются вызывающему
+    public void sendHits(List<EndpointHit> hits) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(contentType());
+        HttpEntity<List<EndpointHit>> requestEntity = new HttpEntity<>(hits, headers);
+
+        callGuard.run(() -> restTemplate.exchange(serverUrl + "/hit/batch", HttpMethod.POST, requestEntity, Void.class));
+    }
+
+    @Override
+    public void close() {
+        if (hitBatcher != null) {
+            hitBatcher.close();
+        }
+        if (hitSpool != null) {
+            hitSpool.close();
+        }
+        viewStatsCache.close();
+        chunkExecutor.shutdownNow();
+    }
+
+    // Последние известные значения здесь не подставляются: они посчитаны за окно getViews,
+    // а не за запрошенный [start, end], поэтому при недоступном сервере ответ пустой
     public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
         try {
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+            return fetchStats(start, end, uris, unique);
+        } catch (Exception e) {
+            log.warn("Статистика недоступна: {}", e.getMessage());
+            return List.of();
+        }
+    }
 
-            // Используем HashMap вместо Map.of
-            Map<String, String> params = new HashMap<>();
-            params.put("start", start.format(formatter));
-            params.put("end", end.format(formatter));
+    // Запрос статистики через POST /stats/query: фильтры передаются в теле, без ограничений на длину списка uri
+    public List<ViewStats> query(StatsQuery query) {
+        HttpHeaders headers = statsHeaders();
+        headers.setContentType(contentType());
 
-            StringBuilder url = new StringBuilder(serverUrl + "/stats?start={start}&end={end}");
+        ResponseEntity<List<ViewStats>> response = callGuard.call(() -> restTemplate.exchange(
+                serverUrl + "/stats/query",
+                HttpMethod.POST,
+                new HttpEntity<>(query, headers),
+                new ParameterizedTypeReference<List<ViewStats>>() {}
+        ));
 
-            if (uris != null && !uris.isEmpty()) {
-                url.append("&uris={uris}");
-                params.put("uris", String.join(",", uris));
-            }
-            if (unique != null) {
-                url.append("&unique={unique}");
-                params.put("unique", unique.toString());
-            }
+        return response.getBody() != null ? response.getBody() : List.of();
+    }
+
+    // Число просмотров по uri за все время (с stats.client.cache.views-since) через кэш клиента
+    public Map<String, Long> getViews(List<String> uris, boolean unique) {
+        try {
+            return getViewsAsync(uris, unique).get(viewsWaitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Просмотры для {} uri не получены за {}", uris.size(), viewsWaitTimeout);
+            return getKnownViews(uris, unique);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return getKnownViews(uris, unique);
+        } catch (ExecutionException e) {
+            log.warn("Не удалось получить просмотры: {}", e.getCause().getMessage());
+            return getKnownViews(uris, unique);
+        }
+    }
+
+    // Последние известные просмотры без обращения к серверу: из кэша, а для uri, вытесненных из него, -
+    // из LastKnownViews. Оба заполняются только загрузками за окно getViews
+    public Map<String, Long> getKnownViews(List<String> uris, boolean unique) {
+        if (uris == null || uris.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, Long> known = new HashMap<>();
+        lastKnownViews.lookup(uris, unique).forEach(stats -> known.put(stats.getUri(), stats.getHits()));
+        known.putAll(viewStatsCache.peek(uris, unique));
+        return known;
+    }
+
+    // Вызывающий знает, что просмотры изменились (например, только что отправил хит)
+    public void expireViews(List<String> uris, boolean unique) {
+        viewStatsCache.expire(uris, unique);
+    }
+
+    public CompletableFuture<Map<String, Long>> getViewsAsync(List<String> uris, boolean unique) {
+        if (uris == null || uris.isEmpty()) {
+            return CompletableFuture.completedFuture(Map.of());
+        }
+        return viewStatsCache.get(uris, unique);
+    }
 
-            ResponseEntity<List<ViewStats>> response = restTemplate.exchange(
-                    url.toString(),
+    // Загрузка для кэша просмотров: окно всегда [views-since, сейчас], поэтому его же значения
+    // и запоминаются как последние известные
+    private List<ViewStats> fetchViews(LocalDateTime viewsSince, List<String> uris, boolean unique) {
+        List<ViewStats> stats = fetchStats(viewsSince, LocalDateTime.now(), uris, unique);
+        lastKnownViews.remember(stats, unique);
+        return stats;
+    }
+
+    // Длинный список uri не помещается в строку запроса, поэтому запрашивается частями параллельно
+    private List<ViewStats> fetchStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
+        if (uris == null || uris.size() <= chunkSize) {
+            return fetchChunk(start, end, uris, unique);
+        }
+
+        List<String> distinct = List.copyOf(new LinkedHashSet<>(uris));
+        List<CompletableFuture<List<ViewStats>>> chunks = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += chunkSize) {
+            List<String> chunk = distinct.subList(from, Math.min(from + chunkSize, distinct.size()));
+            chunks.add(CompletableFuture.supplyAsync(() -> fetchChunk(start, end, chunk, unique), chunkExecutor));
+        }
+
+        // Части не пересекаются по uri, поэтому результаты просто объединяются и сортируются заново
+        List<ViewStats> merged = new ArrayList<>();
+        try {
+            chunks.forEach(chunk -> merged.addAll(chunk.join()));
+        } catch (CompletionException e) {
+            chunks.forEach(chunk -> chunk.cancel(true));
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        merged.sort(Comparator.comparing(ViewStats::getHits).reversed());
+        return merged;
+    }
+
+    private List<ViewStats> fetchChunk(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+        // Используем HashMap вместо Map.of
+        Map<String, String> params = new HashMap<>();
+        params.put("start", start.format(formatter));
+        params.put("end", end.format(formatter));
+
+        StringBuilder url = new StringBuilder(serverUrl + "/stats?start={start}&end={end}");
+
+        if (uris != null && !uris.isEmpty()) {
+            url.append("&uris={uris}");
+            params.put("uris", String.join(",", uris));
+        }
+        if (unique != null) {
+            url.append("&unique={unique}");
+            params.put("unique", unique.toString());
+        }
+
+        ResponseEntity<List<ViewStats>> response = callGuard.call(() -> restTemplate.exchange(
+                url.toString(),
+                HttpMethod.GET,
+                new HttpEntity<>(statsHeaders()),
+                new ParameterizedTypeReference<List<ViewStats>>() {},
+                params
+        ));
+
+        return response.getBody() != null ? response.getBody() : List.of();
+    }
+
+    public List<TrendingStats> getTrending(int limit) {
+        try {
+            ResponseEntity<List<TrendingStats>> response = callGuard.call(() -> restTemplate.exchange(
+                    serverUrl + "/stats/trending?limit={limit}",
                     HttpMethod.GET,
                     null,
-                    new ParameterizedTypeReference<List<ViewStats>>() {},
-                    params
-            );
+                    new ParameterizedTypeReference<List<TrendingStats>>() {},
+                    limit
+            ));
 
-            return response.getBody();
+            List<TrendingStats> trending = response.getBody() != null ? response.getBody() : List.of();
+            lastKnownTrending = trending;
+            return trending;
 
         } catch (Exception e) {
-            System.err.println("Error getting stats: " + e.getMessage());
-            return List.of(); // возвращаем пустой список вместо null
+            log.warn("Тренды недоступны, используются последние известные: {}", e.getMessage());
+            return lastKnownTrending.stream().limit(limit).toList();
+        }
+    }
+
+    // Общая защита вызовов для неблокирующего клиента
+    StatsCallGuard callGuard() {
+        return callGuard;
+    }
+
+    // Включен ли общий буфер хитов; без него отправлять хит должен вызывающий
+    boolean hasBatcher() {
+        return hitBatcher != null;
+    }
+
+    void offerToBatcher(EndpointHit hit) {
+        hitBatcher.offer(hit);
+    }
+
+    // Хиты, которые не удалось отправить, в локальную очередь на диске, если она включена
+    void spool(List<EndpointHit> hits) {
+        if (hitSpool != null) {
+            hitSpool.append(hits);
         }
     }
 
-}
\ No newline at end of file
+    private MediaType contentType() {
+        return binaryFormat ? StatsBinaryHttpMessageConverter.MEDIA_TYPE : MediaType.APPLICATION_JSON;
+    }
+
+    // Сервер без поддержки двоичного формата ответит JSON
+    private HttpHeaders statsHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        if (binaryFormat) {
+            headers.setAccept(List.of(StatsBinaryHttpMessageConverter.MEDIA_TYPE,
+                    MediaType.parseMediaType("application/json;q=0.5")));
+        }
+        return headers;
+    }
+}
@@ -1,17 +1,50 @@
 package ru.practicum.service.client;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
 
+@Slf4j
 @Configuration
+@EnableConfigurationProperties(StatsClientProperties.class)
 public class StatsClientConfig {
 
     @Value("${STATS_SERVER_URL:http://localhost:9090}")
     private String serverUrl;
 
+    // Фабрика объявлена бином, чтобы контекст закрыл пул соединений после остановки клиента
     @Bean
-    public StatsClient statsClient() {
-        return new StatsClient(serverUrl);
+    public ClientHttpRequestFactory statsClientRequestFactory(StatsClientProperties properties) {
+        return StatsTransportFactory.create(properties.getTransport());
+    }
+
+    // close() вызывается при остановке контекста и отправляет накопленные хиты
+    @Bean
+    public StatsClient statsClient(StatsClientProperties properties, ClientHttpRequestFactory statsClientRequestFactory,
+                                   ObjectProvider<HitNodeIdSource> nodeIdSource,
+                                   ObjectProvider<MeterRegistry> meterRegistry) {
+        HitIdGenerator hitIdGenerator = new HitIdGenerator(resolveNodeId(properties, nodeIdSource));
+        return new StatsClient(serverUrl, properties, statsClientRequestFactory, hitIdGenerator,
+                meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    // Случайный номер недопустим: у двух экземпляров он может совпасть, и их хиты будут отброшены как повторы
+    private long resolveNodeId(StatsClientProperties properties, ObjectProvider<HitNodeIdSource> nodeIdSource) {
+        if (properties.getNodeId() >= 0) {
+            return properties.getNodeId();
+        }
+        HitNodeIdSource source = nodeIdSource.getIfAvailable();
+        if (source == null) {
+            throw new IllegalStateException("Не задан stats.client.node-id и нет источника номера узла (HitNodeIdSource)");
+        }
+        long nodeId = source.allocateNodeId();
+        log.info("Номер узла для идентификаторов хитов выделен автоматически: {}", nodeId);
+        return nodeId;
     }
 }
@@ -0,0 +1,123 @@
+package ru.practicum.service.client;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.client")
+public class StatsClientProperties {
+
+    // Номер узла для идентификаторов хитов; должен различаться у экземпляров сервиса.
+    // -1 - выделить через HitNodeIdSource приложения, без него запуск завершится ошибкой
+    private long nodeId = -1;
+
+    // Двоичный формат обмена с сервером статистики вместо JSON
+    private boolean binaryFormat = true;
+
+    private final Transport transport = new Transport();
+
+    private final Batching batching = new Batching();
+
+    private final Resilience resilience = new Resilience();
+
+    private final Spool spool = new Spool();
+
+    private final Cache cache = new Cache();
+
+    private final Query query = new Query();
+
+    @Getter
+    @Setter
+    public static class Transport {
+        private StatsTransportType type = StatsTransportType.APACHE;
+        private Duration connectTimeout = Duration.ofSeconds(1);
+        private Duration readTimeout = Duration.ofSeconds(2);
+        // Ожидание свободного соединения из пула (только APACHE)
+        private Duration connectionRequestTimeout = Duration.ofMillis(500);
+        private int maxConnections = 50;
+        private int maxConnectionsPerRoute = 20;
+        // Соединения, простаивающие дольше, закрываются фоновым потоком (только APACHE)
+        private Duration idleEviction = Duration.ofSeconds(30);
+        private Duration connectionTimeToLive = Duration.ofMinutes(5);
+    }
+
+    @Getter
+    @Setter
+    public static class Batching {
+        // false - каждый хит отправляется синхронно в потоке запроса
+        private boolean enabled = true;
+        private int capacity = 10000;
+        private int batchSize = 200;
+        private Duration maxAge = Duration.ofSeconds(1);
+        private HitOverflowPolicy overflowPolicy = HitOverflowPolicy.DROP_OLDEST;
+        // Сколько ждать места в буфере при политике BLOCK, после чего хит отбрасывается
+        private Duration blockTimeout = Duration.ofMillis(50);
+        // Сколько ждать отправки оставшихся хитов при остановке приложения
+        private Duration drainTimeout = Duration.ofSeconds(10);
+    }
+
+    @Getter
+    @Setter
+    public static class Resilience {
+        // Размер скользящего окна последних вызовов и минимум вызовов для оценки
+        private int slidingWindowSize = 50;
+        private int minimumCalls = 10;
+        // Доля ошибок и медленных вызовов в процентах, при которой цепь размыкается
+        private int failureRateThreshold = 50;
+        private int slowCallRateThreshold = 80;
+        private Duration slowCallDuration = Duration.ofMillis(500);
+        // Сколько цепь остается разомкнутой, прежде чем пропустить пробные вызовы
+        private Duration openDuration = Duration.ofSeconds(10);
+        private int halfOpenCalls = 3;
+        // Ограничение одновременных вызовов сервиса статистики
+        private int maxConcurrentCalls = 20;
+        private Duration maxWait = Duration.ZERO;
+        // Сколько последних значений просмотров хранить для ответа при недоступном сервере
+        private int lastKnownSize = 10000;
+    }
+
+    @Getter
+    @Setter
+    public static class Spool {
+        // Неотправленные хиты сохраняются на диск и отправляются после восстановления сервера
+        private boolean enabled = true;
+        private String directory = System.getProperty("java.io.tmpdir") + "/ewm-stats-spool";
+        private DataSize segmentSize = DataSize.ofMegabytes(8);
+        private DataSize maxDiskSize = DataSize.ofMegabytes(256);
+        private Duration replayInterval = Duration.ofSeconds(5);
+        // Сбрасывать каждую запись на диск (надежнее, но медленнее)
+        private boolean fsync = false;
+    }
+
+    @Getter
+    @Setter
+    public static class Cache {
+        private int maxSize = 50000;
+        // Значение моложе ttl отдается без обращения к серверу
+        private Duration ttl = Duration.ofSeconds(10);
+        // Значение моложе maxStale отдается сразу и обновляется в фоне
+        private Duration maxStale = Duration.ofMinutes(5);
+        // Окно, за которое промахи разных запросов собираются в один запрос к серверу
+        private Duration batchWindow = Duration.ofMillis(5);
+        private int loaderThreads = 4;
+        // Начало периода, за который считаются просмотры
+        private LocalDateTime viewsSince = LocalDateTime.of(2000, 1, 1, 0, 0);
+        // Сколько вызывающий ждет промахнувшиеся значения, прежде чем вернуть то, что есть
+        private Duration waitTimeout = Duration.ofSeconds(3);
+    }
+
+    @Getter
+    @Setter
+    public static class Query {
+        // Большие списки uri делятся на части, которые запрашиваются параллельно
+        private int chunkSize = 100;
+        private int maxParallelism = 4;
+    }
+}
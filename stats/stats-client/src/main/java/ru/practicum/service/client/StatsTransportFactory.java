@@ -0,0 +1,75 @@
+package ru.practicum.service.client;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+
+import java.net.http.HttpClient;
+
+/**
+ * Создает фабрику HTTP-запросов для клиента статистики по настройкам stats.client.transport.
+ */
+public final class StatsTransportFactory {
+
+    private StatsTransportFactory() {
+    }
+
+    public static ClientHttpRequestFactory create(StatsClientProperties.Transport transport) {
+        return switch (transport.getType()) {
+            case APACHE -> apache(transport);
+            case JDK -> jdk(transport);
+            case SIMPLE -> simple(transport);
+        };
+    }
+
+    private static ClientHttpRequestFactory apache(StatsClientProperties.Transport transport) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(transport.getMaxConnections())
+                .setMaxConnPerRoute(transport.getMaxConnectionsPerRoute())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(transport.getConnectTimeout()))
+                        .setSocketTimeout(Timeout.of(transport.getReadTimeout()))
+                        .setTimeToLive(TimeValue.of(transport.getConnectionTimeToLive()))
+                        .build())
+                .build();
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(transport.getConnectionRequestTimeout()))
+                        .setResponseTimeout(Timeout.of(transport.getReadTimeout()))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(transport.getIdleEviction()))
+                .build();
+
+        return new HttpComponentsClientHttpRequestFactory(httpClient);
+    }
+
+    private static ClientHttpRequestFactory jdk(StatsClientProperties.Transport transport) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(transport.getConnectTimeout())
+                .build();
+
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(transport.getReadTimeout());
+        return requestFactory;
+    }
+
+    private static ClientHttpRequestFactory simple(StatsClientProperties.Transport transport) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(transport.getConnectTimeout());
+        requestFactory.setReadTimeout(transport.getReadTimeout());
+        return requestFactory;
+    }
+}
@@ -0,0 +1,13 @@
+package ru.practicum.service.client;
+
+/**
+ * HTTP-транспорт клиента статистики.
+ */
+public enum StatsTransportType {
+    // Apache HttpClient 5 с пулом keep-alive соединений
+    APACHE,
+    // java.net.http.HttpClient с HTTP/2 (пул управляется самим JDK)
+    JDK,
+    // HttpURLConnection без пула, как было раньше
+    SIMPLE
+}
@@ -0,0 +1,223 @@
+package ru.practicum.service.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.service.dto.ViewStats;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Кэш числа просмотров по (uri, unique) на стороне клиента.
+ * Одновременные промахи по одному ключу ждут один и тот же запрос, а промахи разных вызывающих
+ * за короткое окно собираются в один запрос /stats. Устаревшее значение отдается сразу
+ * и обновляется в фоне; если сервер недоступен, остается в силе до maxStale.
+ */
+@Slf4j
+public class ViewStatsCache implements AutoCloseable {
+    private final StatsClientProperties.Cache settings;
+    private final BiFunction<List<String>, Boolean, List<ViewStats>> loader;
+    private final ScheduledExecutorService executor;
+
+    private final Map<Key, Entry> entries;
+    // Ключи, по которым уже идет или запланирована загрузка
+    private final Map<Key, CompletableFuture<Long>> inFlight = new HashMap<>();
+    // Ключи, ожидающие ближайшего окна пакетной загрузки, по признаку unique
+    private final Map<Boolean, Set<String>> queued = new HashMap<>();
+    private final Map<Boolean, Boolean> flushScheduled = new HashMap<>();
+
+    private final Counter hits;
+    private final Counter stale;
+    private final Counter misses;
+    private final Counter loads;
+
+    public ViewStatsCache(StatsClientProperties.Cache settings,
+                          BiFunction<List<String>, Boolean, List<ViewStats>> loader,
+                          MeterRegistry meterRegistry) {
+        this.settings = settings;
+        this.loader = loader;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > settings.getMaxSize();
+            }
+        };
+        this.executor = Executors.newScheduledThreadPool(settings.getLoaderThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "stats-views-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.hits = lookupCounter(meterRegistry, "hit");
+        this.stale = lookupCounter(meterRegistry, "stale");
+        this.misses = lookupCounter(meterRegistry, "miss");
+        this.loads = Counter.builder("stats.client.views.cache.loads")
+                .description("Запросы к серверу статистики, выполненные кэшем просмотров")
+                .register(meterRegistry);
+        Gauge.builder("stats.client.views.cache.size", this, ViewStatsCache::size)
+                .register(meterRegistry);
+    }
+
+    // Значения для uri, которые не удалось получить и нет в кэше, в ответ не попадают
+    public CompletableFuture<Map<String, Long>> get(List<String> uris, boolean unique) {
+        Map<String, Long> ready = new HashMap<>();
+        Map<String, CompletableFuture<Long>> pending = new HashMap<>();
+        long now = System.nanoTime();
+
+        synchronized (this) {
+            for (String uri : new LinkedHashSet<>(uris)) {
+                Key key = new Key(uri, unique);
+                Entry entry = entries.get(key);
+                if (entry != null && now - entry.loadedAt < settings.getTtl().toNanos()) {
+                    hits.increment();
+                    ready.put(uri, entry.views);
+                } else if (entry != null && now - entry.loadedAt < settings.getMaxStale().toNanos()) {
+                    stale.increment();
+                    ready.put(uri, entry.views);
+                    load(key);
+                } else {
+                    misses.increment();
+                    pending.put(uri, load(key));
+                }
+            }
+        }
+
+        if (pending.isEmpty()) {
+            return CompletableFuture.completedFuture(ready);
+        }
+        return CompletableFuture.allOf(pending.values().toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> {
+                    Map<String, Long> result = new HashMap<>(ready);
+                    pending.forEach((uri, future) -> {
+                        Long views = future.join();
+                        if (views != null) {
+                            result.put(uri, views);
+                        }
+                    });
+                    return result;
+                });
+    }
+
+    // Известные значения независимо от возраста, без загрузки: ответ, когда ждать загрузку уже некогда
+    public synchronized Map<String, Long> peek(List<String> uris, boolean unique) {
+        Map<String, Long> known = new HashMap<>();
+        for (String uri : uris) {
+            Entry entry = entries.get(new Key(uri, unique));
+            if (entry != null) {
+                known.put(uri, entry.views);
+            }
+        }
+        return known;
+    }
+
+    // Значения больше не считаются свежими, но остаются запасным ответом на случай недоступности сервера:
+    // следующий get загрузит их заново, а не отдаст из кэша
+    public synchronized void expire(List<String> uris, boolean unique) {
+        long expiredAt = System.nanoTime() - settings.getMaxStale().toNanos();
+        for (String uri : uris) {
+            Key key = new Key(uri, unique);
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                entries.put(key, new Entry(entry.views, expiredAt));
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // Вызывается под блокировкой: возвращает загрузку, уже идущую по ключу, или ставит ключ в окно
+    private CompletableFuture<Long> load(Key key) {
+        CompletableFuture<Long> existing = inFlight.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        inFlight.put(key, future);
+        queued.computeIfAbsent(key.unique, unique -> new LinkedHashSet<>()).add(key.uri);
+        if (!flushScheduled.getOrDefault(key.unique, false)) {
+            flushScheduled.put(key.unique, true);
+            executor.schedule(() -> flush(key.unique), settings.getBatchWindow().toNanos(), TimeUnit.NANOSECONDS);
+        }
+        return future;
+    }
+
+    private void flush(boolean unique) {
+        List<String> uris;
+        synchronized (this) {
+            flushScheduled.put(unique, false);
+            Set<String> batch = queued.remove(unique);
+            uris = batch == null ? List.of() : new ArrayList<>(batch);
+        }
+        if (uris.isEmpty()) {
+            return;
+        }
+
+        Map<String, Long> loaded = null;
+        try {
+            loads.increment();
+            loaded = new HashMap<>();
+            for (ViewStats stats : loader.apply(uris, unique)) {
+                loaded.merge(stats.getUri(), stats.getHits(), Long::sum);
+            }
+        } catch (Exception e) {
+            loaded = null;
+            log.warn("Не удалось обновить просмотры для {} uri: {}", uris.size(), e.getMessage());
+        }
+
+        long now = System.nanoTime();
+        List<Runnable> completions = new ArrayList<>(uris.size());
+        synchronized (this) {
+            for (String uri : uris) {
+                Key key = new Key(uri, unique);
+                Entry entry = entries.get(key);
+                final Long views;
+                if (loaded != null) {
+                    // Отсутствие uri в ответе означает, что просмотров еще не было
+                    views = loaded.getOrDefault(uri, 0L);
+                    entries.put(key, new Entry(views, now));
+                } else {
+                    // Сервер недоступен: отдаем прежнее значение, сколько бы оно ни устарело
+                    views = entry != null ? entry.views : null;
+                }
+                CompletableFuture<Long> future = inFlight.remove(key);
+                if (future != null) {
+                    completions.add(() -> future.complete(views));
+                }
+            }
+        }
+        // Ожидающие завершаются вне блокировки: их продолжения могут обращаться к кэшу
+        completions.forEach(Runnable::run);
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("stats.client.views.cache.lookups")
+                .description("Обращения к кэшу просмотров")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private record Key(String uri, boolean unique) {
+    }
+
+    private record Entry(long views, long loadedAt) {
+    }
+}
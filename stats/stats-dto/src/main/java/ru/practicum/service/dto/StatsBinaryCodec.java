@@ -0,0 +1,214 @@
+package ru.practicum.service.dto;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Компактный двоичный формат для обмена хитами и статистикой между сервисами.
+ * Строки передаются как длина + UTF-8, время - как миллисекунды эпохи (LocalDateTime трактуется как UTC),
+ * что избавляет от разбора JSON и форматирования дат на каждой записи.
+ *
+ * <p>Сообщение: байт версии, затем int количества записей и сами записи.
+ * Количества и длины приходят из тела запроса, поэтому при чтении они ограничиваются сверху,
+ * а списки не выделяются заранее под заявленный размер.
+ */
+public final class StatsBinaryCodec {
+    public static final String MEDIA_TYPE_VALUE = "application/x-ewm-stats";
+
+    private static final byte VERSION = 1;
+
+    // Пределы для данных из сети: больше записей в сообщении и байт в строке не бывает при нормальной работе
+    static final int MAX_RECORDS = 1_000_000;
+    static final int MAX_STRING_BYTES = 64 * 1024;
+    private static final int MAX_PREALLOCATED = 1024;
+
+    private StatsBinaryCodec() {
+    }
+
+    public static void writeHits(List<EndpointHit> hits, OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        writeHeader(out, hits.size());
+        for (EndpointHit hit : hits) {
+            writeHit(out, hit);
+        }
+        out.flush();
+    }
+
+    public static List<EndpointHit> readHits(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        int count = readHeader(in);
+        List<EndpointHit> hits = new ArrayList<>(Math.min(count, MAX_PREALLOCATED));
+        for (int i = 0; i < count; i++) {
+            hits.add(readHit(in));
+        }
+        return hits;
+    }
+
+    public static void writeViewStats(List<ViewStats> stats, OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        writeHeader(out, stats.size());
+        for (ViewStats viewStats : stats) {
+            writeString(out, viewStats.getApp());
+            writeString(out, viewStats.getUri());
+            writeNullableLong(out, viewStats.getHits());
+        }
+        out.flush();
+    }
+
+    public static List<ViewStats> readViewStats(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        int count = readHeader(in);
+        List<ViewStats> stats = new ArrayList<>(Math.min(count, MAX_PREALLOCATED));
+        for (int i = 0; i < count; i++) {
+            stats.add(new ViewStats(readString(in), readString(in), readNullableLong(in)));
+        }
+        return stats;
+    }
+
+    public static void writeQuery(StatsQuery query, OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        writeHeader(out, 1);
+        writeTimestamp(out, query.getStart());
+        writeTimestamp(out, query.getEnd());
+        writeStrings(out, query.getUris());
+        writeStrings(out, query.getUriPatterns());
+        writeString(out, query.getApp());
+        writeNullableLong(out, query.getUnique() == null ? null : (query.getUnique() ? 1L : 0L));
+        writeNullableLong(out, query.getLimit() == null ? null : query.getLimit().longValue());
+        out.flush();
+    }
+
+    public static StatsQuery readQuery(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        int count = readHeader(in);
+        if (count != 1) {
+            throw new IOException("Ожидался один запрос статистики, получено: " + count);
+        }
+        StatsQuery query = new StatsQuery();
+        query.setStart(readTimestamp(in));
+        query.setEnd(readTimestamp(in));
+        query.setUris(readStrings(in));
+        query.setUriPatterns(readStrings(in));
+        query.setApp(readString(in));
+        Long unique = readNullableLong(in);
+        query.setUnique(unique == null ? null : unique != 0);
+        Long limit = readNullableLong(in);
+        query.setLimit(limit == null ? null : Math.toIntExact(limit));
+        return query;
+    }
+
+    static void writeHit(DataOutputStream out, EndpointHit hit) throws IOException {
+        writeNullableLong(out, hit.getId());
+        writeString(out, hit.getApp());
+        writeString(out, hit.getUri());
+        writeString(out, hit.getIp());
+        writeTimestamp(out, hit.getTimestamp());
+    }
+
+    static EndpointHit readHit(DataInputStream in) throws IOException {
+        return EndpointHit.builder()
+                .id(readNullableLong(in))
+                .app(readString(in))
+                .uri(readString(in))
+                .ip(readString(in))
+                .timestamp(readTimestamp(in))
+                .build();
+    }
+
+    static void writeTimestamp(DataOutputStream out, LocalDateTime timestamp) throws IOException {
+        writeNullableLong(out, timestamp == null ? null : timestamp.toInstant(ZoneOffset.UTC).toEpochMilli());
+    }
+
+    static LocalDateTime readTimestamp(DataInputStream in) throws IOException {
+        Long millis = readNullableLong(in);
+        return millis == null ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > MAX_STRING_BYTES) {
+            throw new IOException("Слишком длинная строка: " + length + " байт");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            return null;
+        }
+        checkCount(count);
+        List<String> values = new ArrayList<>(Math.min(count, MAX_PREALLOCATED));
+        for (int i = 0; i < count; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    static void writeNullableLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    static Long readNullableLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    static void writeHeader(DataOutputStream out, int count) throws IOException {
+        out.writeByte(VERSION);
+        out.writeInt(count);
+    }
+
+    static int readHeader(DataInputStream in) throws IOException {
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Неподдерживаемая версия двоичного формата статистики: " + version);
+        }
+        int count = in.readInt();
+        checkCount(count);
+        return count;
+    }
+
+    private static void checkCount(int count) throws IOException {
+        if (count < 0 || count > MAX_RECORDS) {
+            throw new IOException("Некорректное количество записей: " + count);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package ru.practicum.service.dto;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Конвертер двоичного формата {@link StatsBinaryCodec} для Spring MVC и RestTemplate.
+ * Поддерживает одиночный {@link EndpointHit}, {@link StatsQuery}, списки {@link EndpointHit} и {@link ViewStats}.
+ * Регистрируется после JSON-конвертера, поэтому используется только по явному Content-Type/Accept.
+ */
+public class StatsBinaryHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(StatsBinaryCodec.MEDIA_TYPE_VALUE);
+
+    public StatsBinaryHttpMessageConverter() {
+        super(MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return EndpointHit.class == clazz || StatsQuery.class == clazz || List.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Type type, @Nullable Class<?> contextClass, @Nullable MediaType mediaType) {
+        Payload payload = resolvePayload(type);
+        return payload != Payload.UNSUPPORTED && payload != Payload.RAW_LIST && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(@Nullable Type type, Class<?> clazz, @Nullable MediaType mediaType) {
+        Payload payload = type == null ? resolvePayload(clazz) : resolvePayload(type);
+        return payload != Payload.UNSUPPORTED && canWrite(mediaType);
+    }
+
+    @Override
+    public Object read(Type type, @Nullable Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        return readPayload(resolvePayload(type), inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return readPayload(resolvePayload(clazz), inputMessage);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeInternal(Object object, @Nullable Type type, HttpOutputMessage outputMessage) throws IOException {
+        if (object instanceof EndpointHit hit) {
+            StatsBinaryCodec.writeHits(List.of(hit), outputMessage.getBody());
+            return;
+        }
+        if (object instanceof StatsQuery query) {
+            StatsBinaryCodec.writeQuery(query, outputMessage.getBody());
+            return;
+        }
+        if (!(object instanceof List<?> list)) {
+            throw new HttpMessageNotWritableException("Неподдерживаемый тип: " + object.getClass());
+        }
+        // Тип элементов определяем по содержимому: при отправке через RestTemplate параметр типа стирается.
+        // Пустые списки любых типов кодируются одинаково.
+        if (list.isEmpty() || list.get(0) instanceof EndpointHit) {
+            StatsBinaryCodec.writeHits((List<EndpointHit>) list, outputMessage.getBody());
+        } else if (list.get(0) instanceof ViewStats) {
+            StatsBinaryCodec.writeViewStats((List<ViewStats>) list, outputMessage.getBody());
+        } else {
+            throw new HttpMessageNotWritableException("Неподдерживаемый тип элементов: " + list.get(0).getClass());
+        }
+    }
+
+    private Object readPayload(Payload payload, HttpInputMessage inputMessage) throws IOException {
+        switch (payload) {
+            case HIT:
+                List<EndpointHit> hits = StatsBinaryCodec.readHits(inputMessage.getBody());
+                if (hits.size() != 1) {
+                    throw new HttpMessageNotReadableException("Ожидался один хит, получено: " + hits.size(), inputMessage);
+                }
+                return hits.get(0);
+            case QUERY:
+                return StatsBinaryCodec.readQuery(inputMessage.getBody());
+            case HIT_LIST:
+                return StatsBinaryCodec.readHits(inputMessage.getBody());
+            case VIEW_STATS_LIST:
+                return StatsBinaryCodec.readViewStats(inputMessage.getBody());
+            default:
+                throw new HttpMessageNotReadableException("Неподдерживаемый тип для двоичного формата", inputMessage);
+        }
+    }
+
+    private Payload resolvePayload(Type type) {
+        ResolvableType resolvableType = ResolvableType.forType(type);
+        Class<?> rawClass = resolvableType.resolve();
+        if (rawClass == null) {
+            return Payload.UNSUPPORTED;
+        }
+        if (EndpointHit.class == rawClass) {
+            return Payload.HIT;
+        }
+        if (StatsQuery.class == rawClass) {
+            return Payload.QUERY;
+        }
+        if (!List.class.isAssignableFrom(rawClass)) {
+            return Payload.UNSUPPORTED;
+        }
+        Class<?> elementClass = resolvableType.getGeneric(0).resolve();
+        if (elementClass == null) {
+            return Payload.RAW_LIST;
+        }
+        if (EndpointHit.class == elementClass) {
+            return Payload.HIT_LIST;
+        }
+        if (ViewStats.class == elementClass) {
+            return Payload.VIEW_STATS_LIST;
+        }
+        return Payload.UNSUPPORTED;
+    }
+
+    private enum Payload {
+        HIT,
+        QUERY,
+        HIT_LIST,
+        VIEW_STATS_LIST,
+        // Список без информации о типе элементов: допустим только для записи
+        RAW_LIST,
+        UNSUPPORTED
+    }
+}
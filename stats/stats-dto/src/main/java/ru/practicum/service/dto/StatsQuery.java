@@ -0,0 +1,30 @@
+package ru.practicum.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Запрос статистики в теле POST /stats/query.
+ * uris и uriPatterns объединяются по ИЛИ; в шаблонах * означает любую последовательность символов.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatsQuery {
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime start;
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime end;
+    private List<String> uris;
+    private List<String> uriPatterns;
+    private String app;
+    private Boolean unique;
+    private Integer limit;
+}
@@ -0,0 +1,16 @@
+package ru.practicum.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrendingStats {
+    private String app;
+    private String uri;
+    private Double score;
+}
@@ -17,6 +17,8 @@ public class Hit {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
+    @Column(name = "hit_id", unique = true)
+    private Long hitId;
     @Column(nullable = false)
     private String app;
     @Column(nullable = false)
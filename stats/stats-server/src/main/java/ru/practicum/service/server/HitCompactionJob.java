@@ -0,0 +1,87 @@
+package ru.practicum.service.server;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Сворачивает сырые хиты старше заданного возраста в почасовые (или посуточные) агрегаты.
+ * Работает небольшими пачками, каждая в своей транзакции, чтобы не держать долгих блокировок.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stats.compaction.enabled", havingValue = "true", matchIfMissing = true)
+public class HitCompactionJob {
+
+    private final HitRepository hitRepository;
+
+    @Value("${stats.compaction.raw-retention:P30D}")
+    private Duration rawRetention;
+
+    @Value("${stats.compaction.bucket:hour}")
+    private String bucket;
+
+    @Value("${stats.compaction.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${stats.compaction.max-batches-per-run:200}")
+    private int maxBatchesPerRun;
+
+    @Value("${stats.compaction.batch-pause:PT0.2S}")
+    private Duration batchPause;
+
+    private ChronoUnit bucketUnit;
+
+    @PostConstruct
+    void init() {
+        bucketUnit = bucketUnit(bucket);
+    }
+
+    static ChronoUnit bucketUnit(String bucket) {
+        return switch (bucket) {
+            case "hour" -> ChronoUnit.HOURS;
+            case "day" -> ChronoUnit.DAYS;
+            default -> throw new IllegalStateException("Неизвестный интервал компактизации: " + bucket);
+        };
+    }
+
+    @Scheduled(cron = "${stats.compaction.cron:0 15 * * * *}")
+    public void compact() {
+        // Граница выровнена по интервалу, чтобы агрегат за интервал собирался из целых часов/суток
+        LocalDateTime cutoff = LocalDateTime.now().minus(rawRetention).truncatedTo(bucketUnit);
+        log.info("Компактизация хитов старше {} (интервал: {})", cutoff, bucket);
+
+        long total = 0;
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            long compacted = hitRepository.compactBatch(cutoff, bucket, batchSize);
+            total += compacted;
+            if (compacted < batchSize) {
+                break;
+            }
+            if (!pause()) {
+                break;
+            }
+        }
+
+        log.info("Компактизация завершена, свернуто хитов: {}", total);
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(batchPause.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
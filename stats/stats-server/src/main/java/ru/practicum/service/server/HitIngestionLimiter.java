@@ -0,0 +1,81 @@
+package ru.practicum.service.server;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничивает число одновременных запросов на запись хитов, чтобы при зависании БД
+ * они не занимали весь пул потоков Tomcat и соединений, оставляя ресурсы для чтения статистики.
+ * Координатор в БД не пишет и только пересылает хиты на шарды, поэтому у него свой, более высокий лимит.
+ */
+@Slf4j
+@Component
+public class HitIngestionLimiter {
+
+    private final int maxInFlight;
+    private final Semaphore permits;
+    private final Duration acquireTimeout;
+    private final Duration retryAfter;
+    private final Counter admittedHits;
+    private final Counter rejectedHits;
+
+    public HitIngestionLimiter(@Value("${stats.ingest.max-in-flight:3}") int shardMaxInFlight,
+                               @Value("${stats.sharding.coordinator:false}") boolean coordinator,
+                               @Value("${stats.sharding.ingest-max-in-flight:64}") int coordinatorMaxInFlight,
+                               @Value("${stats.ingest.acquire-timeout:PT0.05S}") Duration acquireTimeout,
+                               @Value("${stats.ingest.retry-after:PT1S}") Duration retryAfter,
+                               MeterRegistry meterRegistry) {
+        this.maxInFlight = coordinator ? coordinatorMaxInFlight : shardMaxInFlight;
+        this.permits = new Semaphore(this.maxInFlight);
+        this.acquireTimeout = acquireTimeout;
+        this.retryAfter = retryAfter;
+        this.admittedHits = Counter.builder("stats.ingest.hits")
+                .tag("result", "admitted")
+                .description("Хиты, принятые на запись")
+                .register(meterRegistry);
+        this.rejectedHits = Counter.builder("stats.ingest.hits")
+                .tag("result", "rejected")
+                .description("Хиты, отклоненные из-за перегрузки")
+                .register(meterRegistry);
+        Gauge.builder("stats.ingest.in_flight", this, limiter -> limiter.maxInFlight - limiter.permits.availablePermits())
+                .description("Запросы на запись, выполняемые в данный момент")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Выполняет запись, если есть свободный слот, иначе сразу отклоняет запрос.
+     *
+     * @param hits   количество хитов в запросе, для метрик
+     * @param action запись в хранилище
+     */
+    public void admit(int hits, Runnable action) {
+        if (!acquire()) {
+            rejectedHits.increment(hits);
+            log.warn("Запись хитов отклонена: достигнут лимит одновременных запросов {}", maxInFlight);
+            throw new HitIngestionOverloadedException(retryAfter);
+        }
+        try {
+            admittedHits.increment(hits);
+            action.run();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean acquire() {
+        try {
+            return permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package ru.practicum.service.server;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+@Getter
+public class HitIngestionOverloadedException extends RuntimeException {
+    private final Duration retryAfter;
+
+    public HitIngestionOverloadedException(Duration retryAfter) {
+        super("Сервис статистики перегружен, повторите запрос позже");
+        this.retryAfter = retryAfter;
+    }
+}
@@ -1,10 +1,13 @@
 package ru.practicum.service.server;
 
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import ru.practicum.service.dto.EndpointHit;
 
 
 @Mapper(componentModel = "spring")
 public interface HitMapper {
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "hitId", source = "id")
     Hit toHit(EndpointHit endpointHit);
-}
\ No newline at end of file
+}
@@ -1,41 +1,47 @@
 package ru.practicum.service.server;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
-import ru.practicum.service.dto.ViewStats;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
 public interface HitRepository extends JpaRepository<Hit, Long> {
 
-    @Query("SELECT new ru.practicum.service.dto.ViewStats(h.app, h.uri, COUNT(h.id)) " +
-            "FROM Hit h " +
-            "WHERE h.timestamp BETWEEN ?1 AND ?2 " +
-            "GROUP BY h.app, h.uri " +
-            "ORDER BY COUNT(h.id) DESC")
-    List<ViewStats> getStats(LocalDateTime start, LocalDateTime end);
+    // Вставка хита с клиентским идентификатором; повторная отправка того же хита игнорируется
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO hits (hit_id, app, uri, ip, timestamp) " +
+            "VALUES (:#{#hit.hitId}, :#{#hit.app}, :#{#hit.uri}, :#{#hit.ip}, :#{#hit.timestamp}) " +
+            "ON CONFLICT (hit_id) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("hit") Hit hit);
 
-    @Query("SELECT new ru.practicum.service.dto.ViewStats(h.app, h.uri, COUNT(DISTINCT h.ip)) " +
-            "FROM Hit h " +
-            "WHERE h.timestamp BETWEEN ?1 AND ?2 " +
-            "GROUP BY h.app, h.uri " +
-            "ORDER BY COUNT(DISTINCT h.ip) DESC")
-    List<ViewStats> getStatsUniqueIp(LocalDateTime start, LocalDateTime end);
+    // Хиты за последнее время, сгруппированные по минутам, для восстановления трендов
+    @Query(value = "SELECT h.app AS app, h.uri AS uri, " +
+            "CAST(FLOOR(EXTRACT(EPOCH FROM (:now - h.timestamp)) / 60) AS BIGINT) AS age, COUNT(*) AS hits " +
+            "FROM hits h WHERE h.timestamp >= :since " +
+            "GROUP BY 1, 2, 3", nativeQuery = true)
+    List<TrendingBucketProjection> getRecentHitsByMinute(@Param("now") LocalDateTime now,
+                                                         @Param("since") LocalDateTime since);
 
-    @Query("SELECT new ru.practicum.service.dto.ViewStats(h.app, h.uri, COUNT(h.id)) " +
-            "FROM Hit h " +
-            "WHERE h.timestamp BETWEEN ?1 AND ?2 " +
-            "AND h.uri IN (?3) " +
-            "GROUP BY h.app, h.uri " +
-            "ORDER BY COUNT(h.id) DESC")
-    List<ViewStats> getStatsByUris(LocalDateTime start, LocalDateTime end, List<String> uris);
-
-    @Query("SELECT new ru.practicum.service.dto.ViewStats(h.app, h.uri, COUNT(DISTINCT h.ip)) " +
-            "FROM Hit h " +
-            "WHERE h.timestamp BETWEEN ?1 AND ?2 " +
-            "AND h.uri IN (?3) " +
-            "GROUP BY h.app, h.uri " +
-            "ORDER BY COUNT(DISTINCT h.ip) DESC")
-    List<ViewStats> getStatsByUrisUniqueIp(LocalDateTime start, LocalDateTime end, List<String> uris);
+    // Переносит одну пачку сырых хитов старше cutoff в hit_aggregates и удаляет их.
+    // Удаление и вставка выполняются одним выражением, поэтому пачка либо свернута целиком, либо нет.
+    // Возвращает количество удаленных сырых строк.
+    @Transactional
+    @Query(value = "WITH batch AS (" +
+            "DELETE FROM hits WHERE id IN (" +
+            "SELECT id FROM hits WHERE timestamp < :cutoff LIMIT :batchSize FOR UPDATE SKIP LOCKED) " +
+            "RETURNING app, uri, ip, timestamp), " +
+            "folded AS (" +
+            "INSERT INTO hit_aggregates (app, uri, ip, bucket_start, hits) " +
+            "SELECT app, uri, ip, date_trunc(:bucket, timestamp), COUNT(*) FROM batch " +
+            "GROUP BY 1, 2, 3, 4 " +
+            "ON CONFLICT (app, uri, ip, bucket_start) DO UPDATE SET hits = hit_aggregates.hits + EXCLUDED.hits) " +
+            "SELECT COUNT(*) FROM batch", nativeQuery = true)
+    long compactBatch(@Param("cutoff") LocalDateTime cutoff,
+                      @Param("bucket") String bucket,
+                      @Param("batchSize") int batchSize);
 }
@@ -0,0 +1,35 @@
+package ru.practicum.service.server;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ограниченное окно недавно сохраненных идентификаторов хитов.
+ * Позволяет отбрасывать повторные отправки без обращения к БД; всё, что выпало из окна,
+ * отсекается уникальным ограничением на hits.hit_id.
+ */
+@Component
+public class RecentHitIds {
+
+    private final Map<Long, Boolean> window;
+
+    public RecentHitIds(@Value("${stats.ingest.dedup-window-size:100000}") int windowSize) {
+        this.window = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                return size() > windowSize;
+            }
+        };
+    }
+
+    public synchronized boolean contains(Long hitId) {
+        return window.containsKey(hitId);
+    }
+
+    public synchronized void add(Long hitId) {
+        window.put(hitId, Boolean.TRUE);
+    }
+}
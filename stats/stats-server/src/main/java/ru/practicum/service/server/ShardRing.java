@@ -0,0 +1,52 @@
+package ru.practicum.service.server;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Кольцо согласованного хеширования: каждый шард занимает несколько виртуальных точек,
+ * ключ принадлежит первому шарду по часовой стрелке от своего хеша.
+ * При добавлении шарда переезжает только часть ключей, остальные остаются на месте.
+ */
+public class ShardRing {
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    public ShardRing(List<String> shards, int virtualNodes) {
+        if (shards.isEmpty()) {
+            throw new IllegalStateException("Не задан ни один шард сервиса статистики");
+        }
+        // Точки строятся от адреса шарда, поэтому порядок в конфигурации не влияет на маршрутизацию
+        for (String shard : shards) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(shard + "#" + i), shard);
+            }
+        }
+    }
+
+    public String shardFor(String key) {
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    private static long hash(String key) {
+        byte[] digest = md5().digest(key.getBytes(StandardCharsets.UTF_8));
+        long h = 0;
+        for (int i = 0; i < 8; i++) {
+            h = (h << 8) | (digest[i] & 0xFF);
+        }
+        return h;
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package ru.practicum.service.server;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import ru.practicum.service.dto.EndpointHit;
+import ru.practicum.service.dto.StatsQuery;
+import ru.practicum.service.dto.TrendingStats;
+import ru.practicum.service.dto.ViewStats;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Режим координатора: хиты распределяются по шардам согласованным хешем от uri,
+ * запросы статистики рассылаются на шарды параллельно, а частичные результаты объединяются.
+ * Все хиты одного uri живут на одном шарде, поэтому и общее, и уникальное число просмотров
+ * по паре (app, uri) считается целиком на шарде и при объединении просто суммируется.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stats.sharding.coordinator", havingValue = "true")
+public class ShardedStatsService implements StatsService {
+    private final RestTemplate restTemplate;
+
+    @Value("${stats.sharding.shards}")
+    private List<String> shards;
+
+    @Value("${stats.sharding.virtual-nodes:128}")
+    private int virtualNodes;
+
+    @Value("${stats.sharding.query-timeout:PT5S}")
+    private Duration queryTimeout;
+
+    @Value("${stats.ingest.retry-after:PT1S}")
+    private Duration retryAfter;
+
+    // Потоки рассылки общие для всех одновременных запросов, поэтому их число задается от нагрузки, а не от числа шардов
+    @Value("${stats.sharding.fanout-threads:32}")
+    private int fanoutThreads;
+
+    @Value("${stats.sharding.fanout-queue-capacity:256}")
+    private int fanoutQueueCapacity;
+
+    private ShardRing ring;
+    private ExecutorService executor;
+
+    @PostConstruct
+    void init() {
+        ring = new ShardRing(shards, virtualNodes);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(fanoutThreads, fanoutThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(fanoutQueueCapacity), new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        executor = pool;
+        log.info("Координатор статистики запущен, шарды: {}, потоков рассылки: {}", shards, fanoutThreads);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public void saveHit(EndpointHit endpointHit) {
+        forward(ring.shardFor(endpointHit.getUri()) + "/hit", endpointHit);
+    }
+
+    @Override
+    public void saveHits(List<EndpointHit> endpointHits) {
+        Map<String, List<EndpointHit>> byShard = endpointHits.stream()
+                .collect(Collectors.groupingBy(hit -> ring.shardFor(hit.getUri())));
+        // Пачки на разные шарды независимы; повтор всей пачки безопасен благодаря идентификаторам хитов
+        join(byShard.entrySet().stream()
+                .map(entry -> submit(() -> {
+                    forward(entry.getKey() + "/hit/batch", entry.getValue());
+                    return null;
+                }))
+                .toList());
+    }
+
+    @Override
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
+        return query(StatsQuery.builder()
+                .start(start)
+                .end(end)
+                .uris(uris)
+                .unique(unique)
+                .build());
+    }
+
+    @Override
+    public List<ViewStats> query(StatsQuery query) {
+        Map<String, StatsQuery> targets = new HashMap<>();
+        boolean byUrisOnly = query.getUris() != null && !query.getUris().isEmpty()
+                && (query.getUriPatterns() == null || query.getUriPatterns().isEmpty());
+        if (byUrisOnly) {
+            // Запрос уходит только на шарды, которым принадлежат указанные uri
+            Map<String, List<String>> urisByShard = query.getUris().stream()
+                    .collect(Collectors.groupingBy(ring::shardFor));
+            urisByShard.forEach((shard, uris) -> targets.put(shard, query.toBuilder().uris(uris).build()));
+        } else {
+            shards.forEach(shard -> targets.put(shard, query));
+        }
+
+        List<List<ViewStats>> partials = join(targets.entrySet().stream()
+                .map(entry -> submit(() -> fetchStats(entry.getKey(), entry.getValue())))
+                .toList());
+
+        // Каждый шард вернул свой топ limit; общий топ целиком содержится в их объединении
+        List<ViewStats> merged = merge(partials);
+        return query.getLimit() != null && merged.size() > query.getLimit()
+                ? merged.subList(0, query.getLimit())
+                : merged;
+    }
+
+    @Override
+    public List<TrendingStats> getTrending(int limit) {
+        // Оценки uri тоже считаются на одном шарде, поэтому общий топ собирается из топов шардов
+        List<List<TrendingStats>> partials = join(shards.stream()
+                .map(shard -> submit(() -> fetchTrending(shard, limit)))
+                .toList());
+
+        return partials.stream()
+                .flatMap(Collection::stream)
+                .sorted(Comparator.comparing(TrendingStats::getScore).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    private List<ViewStats> merge(List<List<ViewStats>> partials) {
+        Map<String, ViewStats> merged = new LinkedHashMap<>();
+        for (List<ViewStats> partial : partials) {
+            for (ViewStats stats : partial) {
+                merged.merge(stats.getApp() + "\u0000" + stats.getUri(), stats, (a, b) -> ViewStats.builder()
+                        .app(a.getApp())
+                        .uri(a.getUri())
+                        .hits(a.getHits() + b.getHits())
+                        .build());
+            }
+        }
+        List<ViewStats> result = new ArrayList<>(merged.values());
+        result.sort(Comparator.comparing(ViewStats::getHits).reversed());
+        return result;
+    }
+
+    private List<ViewStats> fetchStats(String shard, StatsQuery query) {
+        List<ViewStats> stats = restTemplate.exchange(shard + "/stats/query", HttpMethod.POST,
+                new HttpEntity<>(query), new ParameterizedTypeReference<List<ViewStats>>() {}).getBody();
+        return Objects.requireNonNullElse(stats, List.of());
+    }
+
+    private List<TrendingStats> fetchTrending(String shard, int limit) {
+        List<TrendingStats> trending = restTemplate.exchange(shard + "/stats/trending?limit={limit}", HttpMethod.GET,
+                null, new ParameterizedTypeReference<List<TrendingStats>>() {}, limit).getBody();
+        return Objects.requireNonNullElse(trending, List.of());
+    }
+
+    private void forward(String url, Object body) {
+        try {
+            restTemplate.postForEntity(url, body, Void.class);
+        } catch (HttpServerErrorException.ServiceUnavailable e) {
+            // Перегрузку шарда передаем клиенту как есть, чтобы он повторил запрос позже
+            throw new HitIngestionOverloadedException(parseRetryAfter(e.getResponseHeaders()));
+        } catch (RestClientException e) {
+            log.warn("Шард статистики недоступен: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Шард статистики недоступен", e);
+        }
+    }
+
+    private Duration parseRetryAfter(HttpHeaders headers) {
+        String value = headers != null ? headers.getFirst(HttpHeaders.RETRY_AFTER) : null;
+        try {
+            return value != null ? Duration.ofSeconds(Long.parseLong(value)) : retryAfter;
+        } catch (NumberFormatException e) {
+            return retryAfter;
+        }
+    }
+
+    // Очередь рассылки переполнена: отвечаем 503, а не копим запросы без предела
+    private <T> CompletableFuture<T> submit(Supplier<T> call) {
+        try {
+            return CompletableFuture.supplyAsync(call, executor);
+        } catch (RejectedExecutionException e) {
+            log.warn("Очередь рассылки на шарды переполнена");
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Координатор статистики перегружен");
+        }
+    }
+
+    // Ответ собирается только из всех шардов: частичный результат молча занизил бы статистику
+    private <T> List<T> join(List<CompletableFuture<T>> futures) {
+        try {
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                    .get(queryTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // cancel не прерывает поток CompletableFuture: зависший вызов освободит поток по таймауту чтения
+            futures.forEach(future -> future.cancel(true));
+            throw new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "Шарды статистики не ответили вовремя");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Запрос прерван");
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+        return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
+
+    private RuntimeException unwrap(Throwable cause) {
+        Throwable actual = cause instanceof CompletionException && cause.getCause() != null ? cause.getCause() : cause;
+        if (actual instanceof RestClientException) {
+            log.warn("Шард статистики недоступен: {}", actual.getMessage());
+            return new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Шард статистики недоступен", actual);
+        }
+        return actual instanceof RuntimeException runtime ? runtime : new IllegalStateException(actual);
+    }
+}
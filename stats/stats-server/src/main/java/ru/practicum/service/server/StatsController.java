@@ -1,16 +1,24 @@
 package ru.practicum.service.server;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.practicum.service.dto.EndpointHit;
+import ru.practicum.service.dto.StatsQuery;
+import ru.practicum.service.dto.TrendingStats;
 import ru.practicum.service.dto.ViewStats;
 
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -20,12 +28,21 @@ import java.util.List;
 public class StatsController {
 
     private final StatsService statsService;
+    private final HitIngestionLimiter ingestionLimiter;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/hit")
     @ResponseStatus(HttpStatus.CREATED)
     public void saveHit(@RequestBody EndpointHit endpointHit) {
         log.info("Получен запрос на сохранение информации о запросе: {}", endpointHit);
-        statsService.saveHit(endpointHit);
+        ingestionLimiter.admit(1, () -> statsService.saveHit(endpointHit));
+    }
+
+    @PostMapping("/hit/batch")
+    @ResponseStatus(HttpStatus.CREATED)
+    public void saveHits(@RequestBody List<EndpointHit> endpointHits) {
+        log.info("Получен запрос на сохранение пачки из {} хитов", endpointHits.size());
+        ingestionLimiter.admit(endpointHits.size(), () -> statsService.saveHits(endpointHits));
     }
 
     @GetMapping("/stats")
@@ -44,4 +61,64 @@ public class StatsController {
         log.info("Получен запрос на получение статистики с {} по {}, uris: {}, unique: {}", start, end, uris, unique);
         return statsService.getStats(start, end, uris, unique);
     }
-}
\ No newline at end of file
+
+    // Для больших списков uri: параметры передаются в теле (JSON или двоичный формат), а не в строке запроса
+    @PostMapping("/stats/query")
+    public List<ViewStats> query(@RequestBody StatsQuery query) {
+        validate(query);
+        log.info("Получен запрос статистики с {} по {}, uris: {}, шаблонов: {}, app: {}, unique: {}, limit: {}",
+                query.getStart(), query.getEnd(), query.getUris() == null ? 0 : query.getUris().size(),
+                query.getUriPatterns() == null ? 0 : query.getUriPatterns().size(),
+                query.getApp(), query.getUnique(), query.getLimit());
+        return statsService.query(query);
+    }
+
+    // Тот же запрос в формате NDJSON: строки читаются из БД курсором и пишутся в ответ по мере чтения,
+    // клиент может обрабатывать их по мере получения
+    @PostMapping(value = "/stats/query", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> queryStream(@RequestBody StatsQuery query) {
+        validate(query);
+        log.info("Получен поточный запрос статистики с {} по {}", query.getStart(), query.getEnd());
+
+        StreamingResponseBody body = outputStream -> {
+            try {
+                statsService.stream(query, viewStats -> {
+                    try {
+                        outputStream.write(objectMapper.writeValueAsBytes(viewStats));
+                        outputStream.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            outputStream.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    private void validate(StatsQuery query) {
+        if (query.getStart() == null || query.getEnd() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Параметры start и end обязательны");
+        }
+        if (query.getStart().isAfter(query.getEnd())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Дата начала не может быть позже даты окончания");
+        }
+        if (query.getLimit() != null && query.getLimit() <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Параметр limit должен быть положительным");
+        }
+    }
+
+    @GetMapping("/stats/trending")
+    public List<TrendingStats> getTrending(@RequestParam(defaultValue = "10") Integer limit) {
+        if (limit <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Параметр limit должен быть положительным");
+        }
+
+        log.info("Получен запрос на получение {} популярных URI", limit);
+        return statsService.getTrending(limit);
+    }
+}
@@ -0,0 +1,21 @@
+package ru.practicum.service.server;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+@Slf4j
+@RestControllerAdvice
+public class StatsErrorHandler {
+
+    @ExceptionHandler(HitIngestionOverloadedException.class)
+    public ResponseEntity<String> handleOverloaded(final HitIngestionOverloadedException e) {
+        long retryAfterSeconds = Math.max(1, e.getRetryAfter().toSeconds());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(e.getMessage());
+    }
+}
@@ -0,0 +1,139 @@
+package ru.practicum.service.server;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.practicum.service.dto.StatsQuery;
+import ru.practicum.service.dto.ViewStats;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Запросы статистики с произвольным набором фильтров.
+ * Списки uri передаются одним параметром-массивом (uri = ANY(?)), поэтому текст запроса
+ * не зависит от длины списка и план переиспользуется драйвером и сервером.
+ * Как и раньше, учитываются и сырые хиты, и свернутые агрегаты.
+ * Сырые хиты фильтруются точно по [start, end], агрегаты - целыми интервалами (stats.compaction.bucket),
+ * пересекающими диапазон: start для них выравнивается вниз до границы интервала.
+ * Для данных старше raw-retention точность запроса - интервал: граничный интервал учитывается целиком,
+ * так что после компактизации итог за невыровненный диапазон расширяется до границ интервалов, а не теряет хиты.
+ * Для выровненных диапазонов итог от компактизации не зависит.
+ */
+@Repository
+@RequiredArgsConstructor
+public class StatsQueryRepository {
+
+    private static final int FETCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${stats.compaction.bucket:hour}")
+    private String bucket;
+
+    public List<ViewStats> find(StatsQuery query) {
+        return jdbcTemplate.query(prepare(query), (rs, rowNum) -> toViewStats(rs));
+    }
+
+    // Строки передаются получателю по мере чтения курсором, без накопления всего результата.
+    // Курсор PostgreSQL работает только внутри транзакции, поэтому вызывать нужно из транзакционного метода
+    public void stream(StatsQuery query, Consumer<ViewStats> sink) {
+        jdbcTemplate.query(prepare(query), (RowCallbackHandler) rs -> sink.accept(toViewStats(rs)));
+    }
+
+    private PreparedStatementCreator prepare(StatsQuery query) {
+        List<Binder> params = new ArrayList<>();
+        String rawFilter = filter("h.timestamp", "h", query.getStart(), query, params);
+        LocalDateTime bucketStart = query.getStart().truncatedTo(HitCompactionJob.bucketUnit(bucket));
+        String aggregatedFilter = filter("a.bucket_start", "a", bucketStart, query, params);
+
+        StringBuilder sql = new StringBuilder();
+        if (Boolean.TRUE.equals(query.getUnique())) {
+            sql.append("SELECT t.app, t.uri, COUNT(DISTINCT t.ip) AS hits ")
+                    .append("FROM (SELECT h.app, h.uri, h.ip FROM hits h WHERE ").append(rawFilter)
+                    .append(" UNION ALL ")
+                    .append("SELECT a.app, a.uri, a.ip FROM hit_aggregates a WHERE ").append(aggregatedFilter)
+                    .append(") t ");
+        } else {
+            sql.append("SELECT t.app, t.uri, CAST(SUM(t.hits) AS BIGINT) AS hits ")
+                    .append("FROM (SELECT h.app, h.uri, COUNT(*) AS hits FROM hits h WHERE ").append(rawFilter)
+                    .append(" GROUP BY h.app, h.uri")
+                    .append(" UNION ALL ")
+                    .append("SELECT a.app, a.uri, SUM(a.hits) FROM hit_aggregates a WHERE ").append(aggregatedFilter)
+                    .append(" GROUP BY a.app, a.uri) t ");
+        }
+        sql.append("GROUP BY t.app, t.uri ORDER BY 3 DESC");
+        if (query.getLimit() != null) {
+            sql.append(" LIMIT ?");
+            params.add((ps, connection, index) -> ps.setInt(index, query.getLimit()));
+        }
+
+        return connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql.toString());
+            ps.setFetchSize(FETCH_SIZE);
+            for (int i = 0; i < params.size(); i++) {
+                params.get(i).bind(ps, connection, i + 1);
+            }
+            return ps;
+        };
+    }
+
+    private static ViewStats toViewStats(ResultSet rs) throws SQLException {
+        return new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits"));
+    }
+
+    private String filter(String timeColumn, String alias, LocalDateTime start, StatsQuery query, List<Binder> params) {
+        StringBuilder where = new StringBuilder(timeColumn + " BETWEEN ? AND ?");
+        params.add((ps, connection, index) -> ps.setTimestamp(index, Timestamp.valueOf(start)));
+        params.add((ps, connection, index) -> ps.setTimestamp(index, Timestamp.valueOf(query.getEnd())));
+
+        if (query.getApp() != null) {
+            where.append(" AND ").append(alias).append(".app = ?");
+            params.add((ps, connection, index) -> ps.setString(index, query.getApp()));
+        }
+
+        boolean hasUris = query.getUris() != null && !query.getUris().isEmpty();
+        boolean hasPatterns = query.getUriPatterns() != null && !query.getUriPatterns().isEmpty();
+        if (hasUris && hasPatterns) {
+            where.append(" AND (").append(alias).append(".uri = ANY(?) OR ")
+                    .append(alias).append(".uri LIKE ANY(?))");
+        } else if (hasUris) {
+            where.append(" AND ").append(alias).append(".uri = ANY(?)");
+        } else if (hasPatterns) {
+            where.append(" AND ").append(alias).append(".uri LIKE ANY(?)");
+        }
+        if (hasUris) {
+            String[] uris = query.getUris().toArray(String[]::new);
+            params.add((ps, connection, index) -> ps.setArray(index, connection.createArrayOf("text", uris)));
+        }
+        if (hasPatterns) {
+            String[] patterns = query.getUriPatterns().stream().map(StatsQueryRepository::toLikePattern)
+                    .toArray(String[]::new);
+            params.add((ps, connection, index) -> ps.setArray(index, connection.createArrayOf("text", patterns)));
+        }
+        return where.toString();
+    }
+
+    // Шаблон с * превращается в LIKE-шаблон; собственные спецсимволы LIKE экранируются
+    private static String toLikePattern(String pattern) {
+        return pattern.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_")
+                .replace("*", "%");
+    }
+
+    @FunctionalInterface
+    private interface Binder {
+        void bind(PreparedStatement ps, Connection connection, int index) throws SQLException;
+    }
+}
@@ -1,18 +1,32 @@
 package ru.practicum.service.server;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
+import ru.practicum.service.dto.StatsBinaryHttpMessageConverter;
+
+import java.time.Duration;
 
 @SpringBootApplication
+@EnableScheduling
 public class StatsServerApplication {
     public static void main(String[] args) {
         SpringApplication.run(StatsServerApplication.class, args);
     }
 
+    // Клиент координатора к шардам: без таймаутов зависший шард навсегда занял бы поток рассылки
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(RestTemplateBuilder builder,
+                                     @Value("${stats.sharding.connect-timeout:PT1S}") Duration connectTimeout,
+                                     @Value("${stats.sharding.read-timeout:PT5S}") Duration readTimeout) {
+        return builder
+                .setConnectTimeout(connectTimeout)
+                .setReadTimeout(readTimeout)
+                .additionalMessageConverters(new StatsBinaryHttpMessageConverter())
+                .build();
     }
 }
@@ -2,13 +2,27 @@ package ru.practicum.service.server;
 
 
 import ru.practicum.service.dto.EndpointHit;
+import ru.practicum.service.dto.StatsQuery;
+import ru.practicum.service.dto.TrendingStats;
 import ru.practicum.service.dto.ViewStats;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface StatsService {
     void saveHit(EndpointHit endpointHit);
 
+    void saveHits(List<EndpointHit> endpointHits);
+
     List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique);
+
+    List<ViewStats> query(StatsQuery query);
+
+    // Передает строки результата по одной; по умолчанию результат собирается целиком (например, из шардов)
+    default void stream(StatsQuery query, Consumer<ViewStats> sink) {
+        query(query).forEach(sink);
+    }
+
+    List<TrendingStats> getTrending(int limit);
 }
\ No newline at end of file
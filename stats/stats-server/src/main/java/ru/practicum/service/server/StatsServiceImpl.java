@@ -1,41 +1,102 @@
 package ru.practicum.service.server;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.practicum.service.dto.EndpointHit;
+import ru.practicum.service.dto.StatsQuery;
+import ru.practicum.service.dto.TrendingStats;
 import ru.practicum.service.dto.ViewStats;
 
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
+@ConditionalOnProperty(name = "stats.sharding.coordinator", havingValue = "false", matchIfMissing = true)
 public class StatsServiceImpl implements StatsService {
 
     private final HitRepository hitRepository;
+    private final StatsQueryRepository statsQueryRepository;
     private final HitMapper hitMapper;
+    private final RecentHitIds recentHitIds;
+    private final TrendingScores trendingScores;
 
     @Override
     public void saveHit(EndpointHit endpointHit) {
         Hit hit = hitMapper.toHit(endpointHit);
-        hitRepository.save(hit);
+        if (hit.getHitId() == null) {
+            hitRepository.save(hit);
+            afterCommit(() -> trendingScores.record(hit.getApp(), hit.getUri(), hit.getTimestamp()));
+            return;
+        }
+        if (recentHitIds.contains(hit.getHitId())) {
+            log.debug("Повторный хит {} пропущен", hit.getHitId());
+            return;
+        }
+        if (hitRepository.insertIfAbsent(hit) == 0) {
+            log.debug("Хит {} уже сохранен ранее", hit.getHitId());
+            afterCommit(() -> recentHitIds.add(hit.getHitId()));
+            return;
+        }
+        afterCommit(() -> {
+            recentHitIds.add(hit.getHitId());
+            trendingScores.record(hit.getApp(), hit.getUri(), hit.getTimestamp());
+        });
     }
 
     @Override
-    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
-        if (uris == null || uris.isEmpty()) {
-            if (unique) {
-                return hitRepository.getStatsUniqueIp(start, end);
-            } else {
-                return hitRepository.getStats(start, end);
-            }
-        } else {
-            if (unique) {
-                return hitRepository.getStatsByUrisUniqueIp(start, end, uris);
-            } else {
-                return hitRepository.getStatsByUris(start, end, uris);
-            }
+    @Transactional
+    public void saveHits(List<EndpointHit> endpointHits) {
+        endpointHits.forEach(this::saveHit);
+    }
+
+    @Override
+    public List<TrendingStats> getTrending(int limit) {
+        return trendingScores.top(limit);
+    }
+
+    // Окно идентификаторов и тренды обновляются только после фиксации,
+    // иначе повтор после отката был бы потерян, а оценка учла бы несохраненный хит
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
         }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    @Override
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
+        return query(StatsQuery.builder()
+                .start(start)
+                .end(end)
+                .uris(uris)
+                .unique(unique)
+                .build());
+    }
+
+    @Override
+    public List<ViewStats> query(StatsQuery query) {
+        return statsQueryRepository.find(query);
+    }
+
+    // Транзакция нужна для чтения курсором; соединение занято, пока клиент принимает ответ
+    @Override
+    @Transactional(readOnly = true)
+    public void stream(StatsQuery query, Consumer<ViewStats> sink) {
+        statsQueryRepository.stream(query, sink);
     }
-}
\ No newline at end of file
+}
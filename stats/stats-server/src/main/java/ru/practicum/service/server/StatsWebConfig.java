@@ -0,0 +1,19 @@
+package ru.practicum.service.server;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.practicum.service.dto.StatsBinaryHttpMessageConverter;
+
+import java.util.List;
+
+@Configuration
+public class StatsWebConfig implements WebMvcConfigurer {
+
+    // Двоичный формат добавляется в конец списка: JSON остается форматом по умолчанию,
+    // а двоичный выбирается только по явному Content-Type/Accept
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new StatsBinaryHttpMessageConverter());
+    }
+}
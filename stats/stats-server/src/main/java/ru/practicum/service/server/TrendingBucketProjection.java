@@ -0,0 +1,12 @@
+package ru.practicum.service.server;
+
+public interface TrendingBucketProjection {
+    String getApp();
+
+    String getUri();
+
+    // Возраст минутного интервала в минутах
+    Long getAge();
+
+    Long getHits();
+}
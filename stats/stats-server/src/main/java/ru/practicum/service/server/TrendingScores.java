@@ -0,0 +1,134 @@
+package ru.practicum.service.server;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.service.dto.TrendingStats;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Экспоненциально затухающие оценки популярности URI.
+ * Каждый хит добавляет к оценке единицу, которая уменьшается вдвое за каждый период полураспада.
+ * Затухание применяется лениво: хранится оценка на момент последнего обновления,
+ * поэтому учет хита стоит O(1), а пересчет выполняется только при чтении.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TrendingScores {
+
+    private final HitRepository hitRepository;
+    private final Map<String, DecayedScore> scores = new ConcurrentHashMap<>();
+
+    @Value("${stats.trending.half-life:PT1H}")
+    private Duration halfLife;
+
+    @Value("${stats.trending.min-score:0.01}")
+    private double minScore;
+
+    @Value("${stats.trending.warmup-half-lives:8}")
+    private int warmupHalfLives;
+
+    private double halfLifeMillis;
+
+    @PostConstruct
+    void init() {
+        halfLifeMillis = halfLife.toMillis();
+    }
+
+    public void record(String app, String uri, LocalDateTime timestamp) {
+        record(app, uri, toMillis(timestamp), 1);
+    }
+
+    public List<TrendingStats> top(int limit) {
+        long now = System.currentTimeMillis();
+        PriorityQueue<TrendingStats> top = new PriorityQueue<>(Comparator.comparingDouble(TrendingStats::getScore));
+        scores.forEach((uri, score) -> {
+            TrendingStats stats = score.snapshot(uri, now, halfLifeMillis);
+            if (top.size() < limit) {
+                top.add(stats);
+            } else if (top.peek().getScore() < stats.getScore()) {
+                top.poll();
+                top.add(stats);
+            }
+        });
+
+        List<TrendingStats> result = new ArrayList<>(top);
+        result.sort(Comparator.comparingDouble(TrendingStats::getScore).reversed());
+        return result;
+    }
+
+    // Удаляет URI, чья оценка затухла до пренебрежимо малой, чтобы ограничить память
+    @Scheduled(fixedDelayString = "${stats.trending.prune-interval:PT5M}")
+    public void prune() {
+        long now = System.currentTimeMillis();
+        int before = scores.size();
+        scores.entrySet().removeIf(entry -> entry.getValue().valueAt(now, halfLifeMillis) < minScore);
+        log.debug("Очистка трендов: {} -> {} URI", before, scores.size());
+    }
+
+    // После перезапуска восстанавливаем оценки по недавним сырым хитам
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime since = now.minus(halfLife.multipliedBy(warmupHalfLives));
+        long nowMillis = toMillis(now);
+
+        List<TrendingBucketProjection> buckets = hitRepository.getRecentHitsByMinute(now, since);
+        buckets.forEach(bucket -> record(bucket.getApp(), bucket.getUri(),
+                nowMillis - Duration.ofMinutes(bucket.getAge()).toMillis(), bucket.getHits()));
+        log.info("Оценки трендов восстановлены по хитам с {}: {} URI", since, scores.size());
+    }
+
+    private void record(String app, String uri, long at, long weight) {
+        scores.computeIfAbsent(uri, key -> new DecayedScore()).add(app, Math.min(at, System.currentTimeMillis()),
+                weight, halfLifeMillis);
+    }
+
+    private long toMillis(LocalDateTime timestamp) {
+        return timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static final class DecayedScore {
+        private String app;
+        private double score;
+        private long updatedAt;
+
+        synchronized void add(String app, long at, long weight, double halfLifeMillis) {
+            this.app = app;
+            if (at >= updatedAt) {
+                score = score * decay(at - updatedAt, halfLifeMillis) + weight;
+                updatedAt = at;
+            } else {
+                // Опоздавший хит: затухаем его вклад до момента последнего обновления
+                score += weight * decay(updatedAt - at, halfLifeMillis);
+            }
+        }
+
+        synchronized double valueAt(long now, double halfLifeMillis) {
+            return score * decay(Math.max(0, now - updatedAt), halfLifeMillis);
+        }
+
+        synchronized TrendingStats snapshot(String uri, long now, double halfLifeMillis) {
+            return new TrendingStats(app, uri, valueAt(now, halfLifeMillis));
+        }
+
+        private static double decay(long elapsedMillis, double halfLifeMillis) {
+            return Math.pow(2, -elapsedMillis / halfLifeMillis);
+        }
+    }
+}
@@ -1,8 +1,29 @@
 CREATE TABLE IF NOT EXISTS hits (
     id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    hit_id BIGINT,
     app VARCHAR(255) NOT NULL,
     uri VARCHAR(512) NOT NULL,
     ip VARCHAR(45) NOT NULL,
     timestamp TIMESTAMP WITHOUT TIME ZONE NOT NULL,
     CONSTRAINT pk_hit PRIMARY KEY (id)
-);
\ No newline at end of file
+);
+
+ALTER TABLE hits ADD COLUMN IF NOT EXISTS hit_id BIGINT;
+
+-- Клиентский идентификатор хита: повторная доставка не создает дубликат
+CREATE UNIQUE INDEX IF NOT EXISTS uq_hits_hit_id ON hits (hit_id);
+
+CREATE INDEX IF NOT EXISTS idx_hits_timestamp ON hits (timestamp);
+
+-- Свернутые сырые хиты: одна строка на (app, uri, ip, интервал), поэтому
+-- и общее количество, и количество уникальных IP считаются точно
+CREATE TABLE IF NOT EXISTS hit_aggregates (
+    app VARCHAR(255) NOT NULL,
+    uri VARCHAR(512) NOT NULL,
+    ip VARCHAR(45) NOT NULL,
+    bucket_start TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    hits BIGINT NOT NULL,
+    CONSTRAINT pk_hit_aggregate PRIMARY KEY (app, uri, ip, bucket_start)
+);
+
+CREATE INDEX IF NOT EXISTS idx_hit_aggregates_bucket_start ON hit_aggregates (bucket_start);